@@ -9,6 +9,7 @@ import java.awt.event.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import umich.ms.batmass.colorpicker.com.bric.plaf.DragCoalescer;
 
 /**
  * A generic editor for configuring a multiple point varying gradient
@@ -41,6 +42,15 @@ public class ColorGradientEditor extends JPanel {
     /** The listeners that should be notified of changes to this emitter */
     private final ArrayList<ActionListener> listeners = new ArrayList<>();
 
+    /** Moves the selected point at most once per frame while dragging */
+    private final DragCoalescer dragCoalescer = new DragCoalescer(new DragCoalescer.Target() {
+        @Override
+        public void dragTo(int x, int y) {
+            movePoint(x, y);
+            repaint(0);
+        }
+    });
+
     /**
      * Create a new editor for gradients
      *
@@ -91,13 +101,17 @@ public class ColorGradientEditor extends JPanel {
                     editPoint();
                 }
             }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragCoalescer.released(e);
+            }
         });
 
         this.addMouseMotionListener(new MouseMotionListener() {
             @Override
             public void mouseDragged(MouseEvent e) {
-                movePoint(e.getX(), e.getY());
-                repaint(0);
+                dragCoalescer.dragged(e);
             }
 
             @Override
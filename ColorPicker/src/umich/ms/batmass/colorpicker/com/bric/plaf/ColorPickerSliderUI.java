@@ -26,8 +26,6 @@ import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
-import java.awt.TexturePaint;
-import java.awt.Toolkit;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
@@ -35,6 +33,8 @@ import java.awt.image.BufferedImage;
 
 import javax.swing.JSlider;
 import javax.swing.SwingConstants;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.MouseInputAdapter;
 import javax.swing.plaf.basic.BasicSliderUI;
 
@@ -51,9 +51,24 @@ public class ColorPickerSliderUI extends BasicSliderUI {
 	/** Half of the height of the arrow */
 	int ARROW_HALF = 8;
 	
-	int[] intArray = new int[ Toolkit.getDefaultToolkit().getScreenSize().height ];
-	BufferedImage bi = new BufferedImage(1,intArray.length,BufferedImage.TYPE_INT_RGB);
+	/** A row of pixel data we recycle every time we regenerate the track. */
+	int[] intArray = new int[0];
+	/** The rendered track: a column 1 pixel wide that is stretched when painted. */
+	BufferedImage bi = null;
+	
+	/* The track is only rebuilt when one of these values changes.
+	 * The two channels are the values the track depends on besides its own:
+	 * for example hue and brightness in SAT mode.  (HUE mode doesn't depend
+	 * on anything else.)
+	 */
 	int lastMode = -1;
+	int lastHeight = -1;
+	float lastChannel1 = -1, lastChannel2 = -1;
+	/** Whether the track needs to be rebuilt before it is painted again. */
+	boolean trackDirty = true;
+	/* Recycled arrays used to read the selected color of the <code>ColorPicker</code>. */
+	float[] hsb = new float[3];
+	int[] rgb = new int[3];
 
 	public ColorPickerSliderUI(JSlider b,ColorPicker cp) {
 		super(b);
@@ -104,60 +119,153 @@ public class ColorPickerSliderUI extends BasicSliderUI {
 		trackRect.height = size;
 	}
 
-	@Override
-	public synchronized void paintTrack(Graphics g) {
+	/** Checks whether the track depicts the current state of the <code>ColorPicker</code>.
+	 * If it doesn't: then the whole slider is repainted.
+	 * <P>This should be called when the selected color changes.  Changes that
+	 * only move the thumb don't invalidate the track.
+	 */
+	public void updateTrack() {
+		if(updateTrackKey()) {
+			slider.repaint();
+		}
+	}
+	
+	/** Records the values the track currently depends on.
+	 * @return true if any of these values changed since the last call,
+	 * so the track has to be rebuilt.
+	 */
+	private boolean updateTrackKey() {
 		int mode = colorPicker.getMode();
-		if(mode==ColorPicker.HUE || mode==ColorPicker.BRI || mode==ColorPicker.SAT) {
-			float[] hsb = colorPicker.getHSB();
-			if(mode==ColorPicker.HUE) {
-				for(int y = 0; y<trackRect.height; y++) {
-					float hue = ((float)y)/((float)trackRect.height);
-					intArray[y] = Color.HSBtoRGB( hue, 1, 1);
-				}
-			} else if(mode==ColorPicker.SAT) {
-				for(int y = 0; y<trackRect.height; y++) {
-					float sat = 1-((float)y)/((float)trackRect.height);
-					intArray[y] = Color.HSBtoRGB( hsb[0], sat, hsb[2]);
-				}
-			} else {
-				for(int y = 0; y<trackRect.height; y++) {
-					float bri = 1-((float)y)/((float)trackRect.height);
-					intArray[y] = Color.HSBtoRGB( hsb[0], hsb[1], bri);
-				}
+		float channel1 = 0, channel2 = 0;
+		if(mode==ColorPicker.SAT) {
+			colorPicker.getHSB(hsb);
+			channel1 = hsb[0];
+			channel2 = hsb[2];
+		} else if(mode==ColorPicker.BRI) {
+			colorPicker.getHSB(hsb);
+			channel1 = hsb[0];
+			channel2 = hsb[1];
+		} else if(mode==ColorPicker.RED) {
+			colorPicker.getRGB(rgb);
+			channel1 = rgb[1];
+			channel2 = rgb[2];
+		} else if(mode==ColorPicker.GREEN) {
+			colorPicker.getRGB(rgb);
+			channel1 = rgb[0];
+			channel2 = rgb[2];
+		} else if(mode==ColorPicker.BLUE) {
+			colorPicker.getRGB(rgb);
+			channel1 = rgb[0];
+			channel2 = rgb[1];
+		}
+		if(mode==lastMode && trackRect.height==lastHeight &&
+				channel1==lastChannel1 && channel2==lastChannel2)
+			return false;
+		lastMode = mode;
+		lastHeight = trackRect.height;
+		lastChannel1 = channel1;
+		lastChannel2 = channel2;
+		trackDirty = true;
+		return true;
+	}
+
+	/** Rebuilds <code>bi</code> if the track it depicts is out of date. */
+	private void regenerateTrack() {
+		updateTrackKey();
+		if(!trackDirty)
+			return;
+		trackDirty = false;
+		
+		int height = Math.max(1, trackRect.height);
+		if(intArray.length<height) {
+			intArray = new int[height];
+		}
+		if(bi==null || bi.getHeight()<height) {
+			bi = new BufferedImage(1,height,BufferedImage.TYPE_INT_RGB);
+		}
+		
+		int mode = lastMode;
+		if(mode==ColorPicker.HUE) {
+			for(int y = 0; y<trackRect.height; y++) {
+				float hue = ((float)y)/((float)trackRect.height);
+				intArray[y] = Color.HSBtoRGB( hue, 1, 1);
+			}
+		} else if(mode==ColorPicker.SAT) {
+			for(int y = 0; y<trackRect.height; y++) {
+				float sat = 1-((float)y)/((float)trackRect.height);
+				intArray[y] = Color.HSBtoRGB( lastChannel1, sat, lastChannel2);
+			}
+		} else if(mode==ColorPicker.BRI) {
+			for(int y = 0; y<trackRect.height; y++) {
+				float bri = 1-((float)y)/((float)trackRect.height);
+				intArray[y] = Color.HSBtoRGB( lastChannel1, lastChannel2, bri);
 			}
 		} else {
-			int[] rgb = colorPicker.getRGB();
+			int c1 = (int)lastChannel1;
+			int c2 = (int)lastChannel2;
 			if(mode==ColorPicker.RED) {
 				for(int y = 0; y<trackRect.height; y++) {
 					int red = 255-(int)(y*255/trackRect.height+.49);
-					intArray[y] = (red << 16)+(rgb[1] << 8)+(rgb[2]);
+					intArray[y] = (red << 16)+(c1 << 8)+(c2);
 				}
 			} else if(mode==ColorPicker.GREEN) {
 				for(int y = 0; y<trackRect.height; y++) {
 					int green = 255-(int)(y*255/trackRect.height+.49);
-					intArray[y] = (rgb[0] << 16)+(green << 8)+(rgb[2]);
+					intArray[y] = (c1 << 16)+(green << 8)+(c2);
 				}
 			} else if(mode==ColorPicker.BLUE) {
 				for(int y = 0; y<trackRect.height; y++) {
 					int blue = 255-(int)(y*255/trackRect.height+.49);
-					intArray[y] = (rgb[0] << 16)+(rgb[1] << 8)+(blue);
+					intArray[y] = (c1 << 16)+(c2 << 8)+(blue);
 				}
 			}
 		}
+		if(trackRect.height>0) {
+			bi.getRaster().setDataElements(0,0,1,trackRect.height,intArray);
+		}
+	}
+
+	@Override
+	public void paintTrack(Graphics g) {
+		regenerateTrack();
+		
 		Graphics2D g2 = (Graphics2D)g;
 		Rectangle r = new Rectangle(6, trackRect.y, 14, trackRect.height);
 		if(slider.hasFocus()) {
 			PlafPaintUtils.paintFocus(g2,r,3);
 		}
 		
-		bi.getRaster().setDataElements(0,0,1,trackRect.height,intArray);
-		TexturePaint p = new TexturePaint(bi,new Rectangle(0,trackRect.y,1,bi.getHeight()));
-		g2.setPaint(p);
-		g2.fillRect(r.x,r.y,r.width,r.height);
+		if(trackRect.height>0) {
+			g2.drawImage(bi, r.x, r.y, r.x+r.width, r.y+r.height, 0, 0, 1, trackRect.height, null);
+		}
 		
 		PlafPaintUtils.drawBevel(g2, r);
 	}
 	
+	/** @return the bounds of the arrow <code>paintThumb()</code> paints, including
+	 * a pixel of padding for antialiasing.
+	 */
+	private Rectangle getArrowBounds() {
+		int y = thumbRect.y+thumbRect.height/2;
+		return new Rectangle(0, y-ARROW_HALF-2, ARROW_HALF+3, 2*ARROW_HALF+5);
+	}
+	
+	/** When the value changes only the thumb moves, so we only
+	 * repaint the old and new thumb locations.  (If the track also needs
+	 * to change then <code>updateTrack()</code> repaints it.)
+	 */
+	@Override
+	protected ChangeListener createChangeListener(JSlider s) {
+		return new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				Rectangle dirty = getArrowBounds();
+				calculateThumbLocation();
+				dirty.add(getArrowBounds());
+				slider.repaint(dirty);
+			}
+		};
+	}
+	
 	@Override
 	public void paintFocus(Graphics g) {}
 
@@ -0,0 +1,136 @@
+/*
+ * @(#)DragCoalescer.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.plaf;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseEvent;
+
+import javax.swing.Timer;
+
+/** Collapses a burst of mouse drag events so the expensive work they
+ * trigger runs at most once per frame.
+ * <P>High-rate mice can send far more <code>MOUSE_DRAGGED</code> events than the screen
+ * can show.  The first drag event after a pause is applied immediately.  After that,
+ * events only record their position, and the latest position is applied once
+ * per <code>FRAME_DELAY</code>.  When the button is released the final position is
+ * applied right away (if it hasn't been already), so nothing is lost.
+ * <P>Typical use, in a <code>MouseInputListener</code>:
+ * <BR><code>public void mouseDragged(MouseEvent e) { coalescer.dragged(e); }</code>
+ * <BR><code>public void mouseReleased(MouseEvent e) { coalescer.released(e); }</code>
+ * <P>This should only be used on the event dispatch thread.
+ */
+public class DragCoalescer {
+
+	/** Receives the positions a <code>DragCoalescer</code> lets through. */
+	public static interface Target {
+		/** Applies a drag to a position.
+		 *
+		 * @param x the x-coordinate of the mouse, relative to the source component.
+		 * @param y the y-coordinate of the mouse, relative to the source component.
+		 */
+		public void dragTo(int x,int y);
+	}
+
+	/** The minimum time (in ms) between two positions being applied: about one frame at 60 Hz. */
+	public static final int FRAME_DELAY = 16;
+
+	private final Target target;
+
+	/** Whether a drag is in progress. */
+	private boolean dragging = false;
+
+	/** Whether a position was recorded that hasn't been applied yet. */
+	private boolean pending = false;
+	private int pendingX, pendingY;
+
+	/** Whether the last position applied is known, and what it was. */
+	private boolean applied = false;
+	private int appliedX, appliedY;
+
+	/** Runs while a drag is in progress.  Each time it fires it applies
+	 * the pending position (if any); once nothing is pending it stops.
+	 */
+	private final Timer frameTimer = new Timer(FRAME_DELAY, new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if(pending) {
+				apply(pendingX, pendingY);
+				frameTimer.restart();
+			}
+		}
+	});
+
+	/** Creates a coalescer.
+	 *
+	 * @param target the object to pass positions to.
+	 */
+	public DragCoalescer(Target target) {
+		if(target==null)
+			throw new NullPointerException();
+		this.target = target;
+		frameTimer.setRepeats(false);
+	}
+
+	/** Records a drag event.  This either applies it immediately or
+	 * defers it until the next frame.
+	 */
+	public void dragged(MouseEvent e) {
+		dragged(e.getX(), e.getY());
+	}
+
+	/** Records a drag to a position.  This either applies it immediately or
+	 * defers it until the next frame.
+	 */
+	public void dragged(int x,int y) {
+		dragging = true;
+		if(frameTimer.isRunning()) {
+			pending = true;
+			pendingX = x;
+			pendingY = y;
+		} else {
+			apply(x, y);
+			frameTimer.restart();
+		}
+	}
+
+	/** Ends a drag.  The release position is applied immediately unless
+	 * it was the last position applied.  If there was no drag (the
+	 * mouse was only clicked) then this does nothing.
+	 */
+	public void released(MouseEvent e) {
+		released(e.getX(), e.getY());
+	}
+
+	/** Ends a drag.  The release position is applied immediately unless
+	 * it was the last position applied.  If there was no drag (the
+	 * mouse was only clicked) then this does nothing.
+	 */
+	public void released(int x,int y) {
+		frameTimer.stop();
+		if(dragging && !(applied && appliedX==x && appliedY==y)) {
+			apply(x, y);
+		}
+		dragging = false;
+		pending = false;
+		applied = false;
+	}
+
+	/** Applies any pending position now. */
+	public void flush() {
+		if(pending)
+			apply(pendingX, pendingY);
+	}
+
+	private void apply(int x,int y) {
+		pending = false;
+		applied = true;
+		appliedX = x;
+		appliedY = y;
+		target.dragTo(x, y);
+	}
+}
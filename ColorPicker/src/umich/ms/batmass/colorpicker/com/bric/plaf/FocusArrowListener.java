@@ -22,23 +22,24 @@ package umich.ms.batmass.colorpicker.com.bric.plaf;
 import java.awt.Component;
 import java.awt.Container;
 import java.awt.FocusTraversalPolicy;
-import java.awt.Point;
-import java.awt.Window;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.HashSet;
 import java.util.Set;
 
-import javax.swing.JPanel;
-import javax.swing.SwingUtilities;
-
 /** This listens for arrow keys and shifts
  * the keyboard focus accordingly.
  * So if you press the left arrow key, the component
  * to the left of the source component requests the focus.
- * <P>This scans for the first available component whose
- * <code>isFocusable()</code> method returns <code>true</code>.
+ * <P>This looks for the nearest component in that direction
+ * that is part of the same focus traversal cycle.  Components
+ * directly in line with the source are preferred, but components
+ * that are only partly in that direction are also found.
  * If no such component is found: nothing happens.
+ * <P>The bounds of the components in each focus cycle are indexed
+ * (see <code>FocusGrid</code>), so holding down an arrow key in a
+ * window with hundreds of controls stays responsive.  The index
+ * is rebuilt after the layout changes.
  */
 public class FocusArrowListener extends KeyAdapter {
 
@@ -73,40 +74,46 @@ public class FocusArrowListener extends KeyAdapter {
 	 * component, for example.)
 	 */
 	public static boolean shiftFocus(int dx,int dy,Component src) {
-		if(dx==0 && dy==0) //this would result in an infinite loop
+		if(dx==0 && dy==0)
 			throw new IllegalArgumentException("dx ("+dx+") and ("+dy+") cannot both be zero");
-		
-		Set<Component> focusableComponents = getFocusableComponents(src);
-		
-		int x = src.getWidth()/2;
-		int y = src.getHeight()/2;
-		Window window = SwingUtilities.getWindowAncestor(src);
-		if(window==null) return false;
-		Point p = SwingUtilities.convertPoint(src, x, y, window);
-		
-		Component comp = null;
-		int windowWidth = window.getWidth();
-		int windowHeight = window.getHeight();
-		
-		while(p.x>0 && p.x<windowWidth && p.y>0 && p.y<windowHeight && (comp==null || comp==src || (comp instanceof JPanel))) {
-			p.x += dx;
-			p.y += dy;
-			comp = SwingUtilities.getDeepestComponentAt(window, p.x, p.y);
-			boolean canAcceptFocus = focusableComponents.contains( comp );
-			if(comp!=null && canAcceptFocus==false)
-				comp = null;
+		//only the direction matters, and diagonals follow the dominant axis:
+		if(Math.abs(dx)>=Math.abs(dy)) {
+			dx = Integer.signum(dx);
+			dy = 0;
+		} else {
+			dx = 0;
+			dy = Integer.signum(dy);
 		}
 		
-		//TODO: implement a more robust searching mechanism instead of the above
-		//If a component is below the src, but to the left or right of the center:
-		//it should still be detected when you press the down arrow key.
+		Container root = getFocusCycleRoot(src);
+		if(root==null) return false;
 
-		if(comp!=null && comp!=src && comp!=window && (!(comp instanceof JPanel))) {
+		Component comp = FocusGrid.get(root).find(dx, dy, src);
+		if(comp!=null) {
 			comp.requestFocus();
 			return true;
 		}
 		return false;
 	}
+
+	/** Returns the focus cycle root that <code>getFocusableComponents()</code>
+	 * traverses from a component.
+	 * 
+	 * @param c the component to start from.
+	 * @return the nearest focus cycle root ancestor of <code>c</code> that is showing,
+	 * focusable and enabled, or <code>null</code>.
+	 */
+	static Container getFocusCycleRoot(Component c) {
+		Container rootAncestor = c.getFocusCycleRootAncestor();
+		while (rootAncestor != null && 
+				!(rootAncestor.isShowing() && 
+				rootAncestor.isFocusable() && 
+				rootAncestor.isEnabled())) 
+		{
+			rootAncestor = rootAncestor.getFocusCycleRootAncestor();
+		}
+		return rootAncestor;
+	}
 	
 	/** Returns a set of all the components that
 	 * can have the keyboard focus.
@@ -0,0 +1,389 @@
+/*
+ * @(#)FocusGrid.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.plaf;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Rectangle;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Set;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.RootPaneContainer;
+
+/** A spatial index of the focusable components in one focus cycle, used by
+ * <code>FocusArrowListener</code> to find the next component in a direction.
+ * <P>The bounds of every focusable component (relative to the focus cycle root)
+ * are stored in a uniform grid of roughly sqrt(n) by sqrt(n) cells.  A query
+ * sweeps the grid away from the source one column (or row) at a time, and
+ * stops as soon as no remaining column can beat the best candidate found so far.
+ * <P>The grid is built lazily, and is discarded when a component in the cycle
+ * is added, removed, moved, resized, shown, hidden, enabled or disabled.
+ * Queries do not allocate.
+ * <P>This should only be used on the event dispatch thread.
+ */
+class FocusGrid {
+
+	/** The client property a grid is stored under. */
+	private static final String GRID_KEY = FocusGrid.class.getName();
+
+	/** Returns the grid for a focus cycle root, creating it if necessary.
+	 * <P>Grids are stored as client properties, so if the root is neither a
+	 * <code>JComponent</code> nor a <code>RootPaneContainer</code> then the returned
+	 * grid is not cached and does not listen to the components it indexes.
+	 */
+	static FocusGrid get(Container root) {
+		JComponent owner = null;
+		if(root instanceof RootPaneContainer) {
+			owner = ((RootPaneContainer)root).getRootPane();
+		} else if(root instanceof JComponent) {
+			owner = (JComponent)root;
+		}
+		if(owner==null)
+			return new FocusGrid(root, false);
+		Object value = owner.getClientProperty(GRID_KEY);
+		if(value instanceof FocusGrid && ((FocusGrid)value).root==root)
+			return (FocusGrid)value;
+		FocusGrid grid = new FocusGrid(root, true);
+		owner.putClientProperty(GRID_KEY, grid);
+		return grid;
+	}
+
+	/** Discards the grid whenever the layout of the focus cycle may have changed. */
+	private class Invalidator implements ComponentListener, ContainerListener, HierarchyListener, PropertyChangeListener {
+
+		@Override
+		public void componentResized(ComponentEvent e) {
+			invalidate();
+		}
+
+		@Override
+		public void componentMoved(ComponentEvent e) {
+			invalidate();
+		}
+
+		@Override
+		public void componentShown(ComponentEvent e) {
+			invalidate();
+		}
+
+		@Override
+		public void componentHidden(ComponentEvent e) {
+			invalidate();
+		}
+
+		@Override
+		public void componentAdded(ContainerEvent e) {
+			invalidate();
+		}
+
+		@Override
+		public void componentRemoved(ContainerEvent e) {
+			invalidate();
+		}
+
+		@Override
+		public void hierarchyChanged(HierarchyEvent e) {
+			invalidate();
+		}
+
+		@Override
+		public void propertyChange(PropertyChangeEvent e) {
+			String name = e.getPropertyName();
+			if("enabled".equals(name) || "focusable".equals(name) ||
+					"focusCycleRoot".equals(name) ||
+					"focusTraversalPolicy".equals(name) ||
+					"focusTraversalPolicyProvider".equals(name)) {
+				invalidate();
+			}
+		}
+	}
+
+	private final Container root;
+	private final boolean listening;
+	private final Invalidator invalidator = new Invalidator();
+
+	/** Whether the arrays below describe the current layout. */
+	private boolean valid = false;
+	/** The components this grid has attached listeners to. */
+	private Component[] registered = new Component[0];
+
+	/** The indexed components and their bounds relative to the root. */
+	private Component[] components = new Component[0];
+	private int[] x, y, width, height;
+
+	/** The grid layout: the origin, cell size and number of cells. */
+	private int originX, originY, cellWidth, cellHeight, columns, rows;
+	/** The items of cell <code>i</code> are <code>cellItems[cellStart[i]]</code>
+	 * through <code>cellItems[cellStart[i+1]-1]</code>.
+	 */
+	private int[] cellStart, cellItems;
+
+	/** A recycled rectangle for the bounds of the source component. */
+	private final Rectangle srcBounds = new Rectangle();
+
+	private FocusGrid(Container root,boolean listening) {
+		this.root = root;
+		this.listening = listening;
+	}
+
+	/** Discards the current index.  It is rebuilt by the next query. */
+	void invalidate() {
+		if(!valid)
+			return;
+		valid = false;
+		for(int a = 0; a<registered.length; a++) {
+			Component c = registered[a];
+			c.removeComponentListener(invalidator);
+			c.removePropertyChangeListener(invalidator);
+			if(c instanceof Container)
+				((Container)c).removeContainerListener(invalidator);
+		}
+		root.removeHierarchyListener(invalidator);
+		registered = new Component[0];
+		components = new Component[0];
+		cellStart = null;
+		cellItems = null;
+	}
+
+	/** Finds the nearest focusable component in a direction.
+	 * <P>A component directly in line with the center of <code>src</code> is found
+	 * at its distance along that line.  Other components in that direction are
+	 * also considered, but their offset from the line counts double against them.
+	 *
+	 * @param dx -1, 0 or 1.
+	 * @param dy -1, 0 or 1.  Exactly one of <code>dx</code> and <code>dy</code> must be nonzero.
+	 * @param src the component to search from.  This must be in this grid's focus cycle.
+	 * @return the nearest component that can accept the focus, or <code>null</code>.
+	 */
+	Component find(int dx,int dy,Component src) {
+		if(!valid)
+			build(src);
+		if(components.length==0 || !getBoundsInRoot(src, srcBounds))
+			return null;
+
+		int cx = srcBounds.x + srcBounds.width/2;
+		int cy = srcBounds.y + srcBounds.height/2;
+		boolean horizontal = dx!=0;
+		int step = horizontal ? dx : dy;
+		int bandCount = horizontal ? columns : rows;
+		int cellCount = horizontal ? rows : columns;
+		int bandSize = horizontal ? cellWidth : cellHeight;
+		int center = horizontal ? cx-originX : cy-originY;
+
+		int band = center/bandSize;
+		if(band<0) {
+			if(step<0) return null;
+			band = 0;
+		} else if(band>=bandCount) {
+			if(step>0) return null;
+			band = bandCount-1;
+		}
+
+		Component best = null;
+		long bestScore = Long.MAX_VALUE;
+		for(int b = band; b>=0 && b<bandCount; b+=step) {
+			if(b!=band) {
+				//components first seen in this band are at least this far away:
+				long minDistance = step>0 ? (long)b*bandSize - center : center - (long)(b+1)*bandSize;
+				if(minDistance>=bestScore)
+					break;
+			}
+			for(int c = 0; c<cellCount; c++) {
+				int cell = horizontal ? c*columns+b : b*columns+c;
+				for(int i = cellStart[cell]; i<cellStart[cell+1]; i++) {
+					int k = cellItems[i];
+					long score = getScore(k, dx, dy, cx, cy);
+					if(score<bestScore && components[k]!=src && canAcceptFocus(components[k])) {
+						bestScore = score;
+						best = components[k];
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/** @return how far component <code>k</code> is from (cx,cy) in the direction (dx,dy),
+	 * or <code>Long.MAX_VALUE</code> if it is not in that direction.
+	 */
+	private long getScore(int k,int dx,int dy,int cx,int cy) {
+		long along, across;
+		if(dx>0) {
+			if(x[k] + width[k]/2<=cx) return Long.MAX_VALUE;
+			along = x[k] - cx;
+			across = getGap(cy, y[k], height[k]);
+		} else if(dx<0) {
+			if(x[k] + width[k]/2>=cx) return Long.MAX_VALUE;
+			along = cx - (x[k] + width[k]);
+			across = getGap(cy, y[k], height[k]);
+		} else if(dy>0) {
+			if(y[k] + height[k]/2<=cy) return Long.MAX_VALUE;
+			along = y[k] - cy;
+			across = getGap(cx, x[k], width[k]);
+		} else {
+			if(y[k] + height[k]/2>=cy) return Long.MAX_VALUE;
+			along = cy - (y[k] + height[k]);
+			across = getGap(cx, x[k], width[k]);
+		}
+		return Math.max(0, along) + 2*across;
+	}
+
+	/** @return the distance from <code>v</code> to the interval [start, start+length). */
+	private static int getGap(int v,int start,int length) {
+		if(v<start)
+			return start - v;
+		if(v>=start+length)
+			return v - (start+length) + 1;
+		return 0;
+	}
+
+	/** Checks the state of a component when it is found, in case it changed
+	 * in a way that doesn't generate an event (like <code>Component.setEnabled()</code>).
+	 */
+	private static boolean canAcceptFocus(Component c) {
+		return c.isShowing() && c.isEnabled() && c.isFocusable();
+	}
+
+	/** Stores the bounds of a component relative to the root.
+	 * @return false if the component is not a descendant of the root.
+	 */
+	private boolean getBoundsInRoot(Component c,Rectangle dest) {
+		dest.setBounds(0, 0, c.getWidth(), c.getHeight());
+		while(c!=root) {
+			if(c==null)
+				return false;
+			dest.x += c.getX();
+			dest.y += c.getY();
+			c = c.getParent();
+		}
+		return true;
+	}
+
+	private void build(Component src) {
+		Set<Component> set = FocusArrowListener.getFocusableComponents(src);
+		ArrayList<Component> list = new ArrayList<Component>(set.size());
+		ArrayList<Rectangle> boundsList = new ArrayList<Rectangle>(set.size());
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for(Component c : set) {
+			Rectangle r = new Rectangle();
+			//panels are only focusable by accident (see getFocusableComponents())
+			if(c==root || (c instanceof JPanel) || !getBoundsInRoot(c, r) || r.isEmpty())
+				continue;
+			list.add(c);
+			boundsList.add(r);
+			minX = Math.min(minX, r.x);
+			minY = Math.min(minY, r.y);
+			maxX = Math.max(maxX, r.x + r.width);
+			maxY = Math.max(maxY, r.y + r.height);
+		}
+
+		int n = list.size();
+		components = list.toArray(new Component[n]);
+		x = new int[n];
+		y = new int[n];
+		width = new int[n];
+		height = new int[n];
+		for(int a = 0; a<n; a++) {
+			Rectangle r = boundsList.get(a);
+			x[a] = r.x;
+			y[a] = r.y;
+			width[a] = r.width;
+			height[a] = r.height;
+		}
+
+		if(n==0) {
+			originX = originY = 0;
+			cellWidth = cellHeight = columns = rows = 1;
+		} else {
+			int cellsPerSide = Math.max(1, (int)Math.ceil(Math.sqrt(n)));
+			originX = minX;
+			originY = minY;
+			cellWidth = Math.max(1, (maxX - minX + cellsPerSide - 1)/cellsPerSide);
+			cellHeight = Math.max(1, (maxY - minY + cellsPerSide - 1)/cellsPerSide);
+			columns = Math.max(1, (maxX - minX + cellWidth - 1)/cellWidth);
+			rows = Math.max(1, (maxY - minY + cellHeight - 1)/cellHeight);
+		}
+
+		//count how many components overlap each cell, then fill the cells
+		cellStart = new int[columns*rows+1];
+		for(int k = 0; k<n; k++) {
+			int c1 = getColumn(x[k]), c2 = getColumn(x[k]+width[k]-1);
+			int r1 = getRow(y[k]), r2 = getRow(y[k]+height[k]-1);
+			for(int r = r1; r<=r2; r++) {
+				for(int c = c1; c<=c2; c++) {
+					cellStart[r*columns+c+1]++;
+				}
+			}
+		}
+		for(int a = 1; a<cellStart.length; a++) {
+			cellStart[a] += cellStart[a-1];
+		}
+		cellItems = new int[cellStart[cellStart.length-1]];
+		int[] fill = new int[columns*rows];
+		for(int k = 0; k<n; k++) {
+			int c1 = getColumn(x[k]), c2 = getColumn(x[k]+width[k]-1);
+			int r1 = getRow(y[k]), r2 = getRow(y[k]+height[k]-1);
+			for(int r = r1; r<=r2; r++) {
+				for(int c = c1; c<=c2; c++) {
+					int cell = r*columns+c;
+					cellItems[cellStart[cell] + fill[cell]++] = k;
+				}
+			}
+		}
+
+		if(listening)
+			register();
+		valid = true;
+	}
+
+	private int getColumn(int v) {
+		return Math.min(columns-1, Math.max(0, (v - originX)/cellWidth));
+	}
+
+	private int getRow(int v) {
+		return Math.min(rows-1, Math.max(0, (v - originY)/cellHeight));
+	}
+
+	/** Attaches listeners to every component under the root, so any change
+	 * to the layout (not only to the indexed components) discards this grid.
+	 */
+	private void register() {
+		ArrayList<Component> list = new ArrayList<Component>();
+		root.addHierarchyListener(invalidator);
+		root.addContainerListener(invalidator);
+		root.addPropertyChangeListener(invalidator);
+		list.add(root);
+		for(Component child : root.getComponents()) {
+			register(child, list);
+		}
+		registered = list.toArray(new Component[list.size()]);
+	}
+
+	private void register(Component c,ArrayList<Component> list) {
+		c.addComponentListener(invalidator);
+		c.addPropertyChangeListener(invalidator);
+		list.add(c);
+		if(c instanceof Container) {
+			Container container = (Container)c;
+			container.addContainerListener(invalidator);
+			for(Component child : container.getComponents()) {
+				register(child, list);
+			}
+		}
+	}
+}
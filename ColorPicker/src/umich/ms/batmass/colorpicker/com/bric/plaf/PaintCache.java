@@ -0,0 +1,160 @@
+/*
+ * @(#)PaintCache.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.plaf;
+
+import java.awt.TexturePaint;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A thread-safe cache of <code>TexturePaints</code> that is bounded by the
+ * number of bytes their images use.
+ * <P>Lookups never lock.  When the cache grows past its limit the oldest
+ * entries are evicted, except that entries used since the last eviction
+ * pass get a second chance (this is the "clock" approximation of a
+ * least-recently-used cache).
+ * <P>The counters this cache maintains (hits, misses, evictions and the
+ * current size) are meant to help tune the limit.
+ *
+ * @param <K> the type of the keys.  Keys must be immutable and implement
+ * <code>equals()</code> and <code>hashCode()</code>.
+ */
+public class PaintCache<K> {
+
+	private static class Entry {
+		final TexturePaint paint;
+		final long byteSize;
+		volatile boolean used = false;
+
+		Entry(TexturePaint paint) {
+			this.paint = paint;
+			BufferedImage bi = paint.getImage();
+			//TexturePaints here are always backed by int-based images
+			this.byteSize = 4L*bi.getWidth()*bi.getHeight();
+		}
+	}
+
+	private final ConcurrentHashMap<K, Entry> map = new ConcurrentHashMap<K, Entry>();
+	/** The keys in the order they were added (or given a second chance). */
+	private final ConcurrentLinkedQueue<K> order = new ConcurrentLinkedQueue<K>();
+	private final long maxBytes;
+
+	private final AtomicLong byteSize = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/** Creates a new cache.
+	 *
+	 * @param maxBytes the number of bytes the cached images may use before entries are evicted.
+	 */
+	public PaintCache(long maxBytes) {
+		if(maxBytes<0)
+			throw new IllegalArgumentException("maxBytes ("+maxBytes+") must not be negative");
+		this.maxBytes = maxBytes;
+	}
+
+	/** @return the paint stored for this key, or <code>null</code>. */
+	public TexturePaint get(K key) {
+		Entry e = map.get(key);
+		if(e==null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		if(!e.used)
+			e.used = true;
+		return e.paint;
+	}
+
+	/** Stores a paint in this cache.
+	 * <P>If another thread stored a paint for the same key first, then that
+	 * paint is kept and returned instead.
+	 *
+	 * @return the paint that is now cached for this key.
+	 */
+	public TexturePaint put(K key,TexturePaint paint) {
+		Entry e = new Entry(paint);
+		Entry existing = map.putIfAbsent(key, e);
+		if(existing!=null)
+			return existing.paint;
+		order.add(key);
+		if(byteSize.addAndGet(e.byteSize)>maxBytes)
+			evict();
+		return paint;
+	}
+
+	/** Removes entries until this cache is within its limit. */
+	private void evict() {
+		/* Every entry is either evicted or has its "used" flag cleared when
+		 * it is polled, so two passes over the queue are always enough.
+		 */
+		int remainingPolls = 2*map.size()+1;
+		while(byteSize.get()>maxBytes && remainingPolls-->0) {
+			K key = order.poll();
+			if(key==null)
+				return;
+			Entry e = map.get(key);
+			if(e==null)
+				continue;
+			if(e.used) {
+				e.used = false;
+				order.add(key);
+				continue;
+			}
+			if(map.remove(key, e)) {
+				byteSize.addAndGet(-e.byteSize);
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/** Removes every entry.  This does not reset the counters. */
+	public void clear() {
+		order.clear();
+		map.clear();
+		byteSize.set(0);
+	}
+
+	/** @return the number of entries in this cache. */
+	public int size() {
+		return map.size();
+	}
+
+	/** @return the number of bytes the cached images use. */
+	public long getByteSize() {
+		return byteSize.get();
+	}
+
+	/** @return the number of bytes the cached images may use before entries are evicted. */
+	public long getMaxByteSize() {
+		return maxBytes;
+	}
+
+	/** @return the number of lookups that found a paint. */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/** @return the number of lookups that didn't find a paint. */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/** @return the number of entries removed to keep this cache within its limit. */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return "PaintCache[ size = "+size()+", bytes = "+getByteSize()+"/"+maxBytes+
+				", hits = "+getHitCount()+", misses = "+getMissCount()+
+				", evictions = "+getEvictionCount()+" ]";
+	}
+}
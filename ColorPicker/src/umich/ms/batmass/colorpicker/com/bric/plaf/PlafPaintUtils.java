@@ -29,7 +29,6 @@ import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.TexturePaint;
 import java.awt.image.BufferedImage;
-import java.util.Hashtable;
 
 import javax.swing.SwingConstants;
 import javax.swing.UIManager;
@@ -151,11 +150,68 @@ public class PlafPaintUtils {
 		}
 	}
 	
-	/** The table used to store vertical gradients. */
-	private static Hashtable<String, TexturePaint> verticalGradients;
+	/** The number of bytes each paint cache may use. */
+	private static final long CACHE_BYTE_LIMIT = 1024*1024;
+	
+	/** Identifies a gradient created by <code>getVerticalGradient()</code>. */
+	private static final class GradientKey {
+		final String name;
+		final int height, y;
+		
+		GradientKey(String name,int height,int y) {
+			this.name = name;
+			this.height = height;
+			this.y = y;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (name.hashCode()*31+height)*31+y;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof GradientKey))
+				return false;
+			GradientKey k = (GradientKey)obj;
+			return k.height==height && k.y==y && k.name.equals(name);
+		}
+	}
+	
+	/** Identifies a pattern created by <code>getCheckerBoard()</code>. */
+	private static final class CheckerKey {
+		final int checkerSize, rgb1, rgb2;
+		
+		CheckerKey(int checkerSize,int rgb1,int rgb2) {
+			this.checkerSize = checkerSize;
+			this.rgb1 = rgb1;
+			this.rgb2 = rgb2;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (checkerSize*31+rgb1)*31+rgb2;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof CheckerKey))
+				return false;
+			CheckerKey k = (CheckerKey)obj;
+			return k.checkerSize==checkerSize && k.rgb1==rgb1 && k.rgb2==rgb2;
+		}
+	}
+	
+	/** The cache used to store vertical gradients. */
+	private static final PaintCache<GradientKey> verticalGradients = new PaintCache<GradientKey>(CACHE_BYTE_LIMIT);
+	
+	/** @return the cache <code>getVerticalGradient()</code> uses, to monitor its statistics. */
+	public static PaintCache<?> getVerticalGradientCache() {
+		return verticalGradients;
+	}
 	
 	/** Create a vertical gradient.  This gradient is stored in a
-	 * table and reused throughout the rest of this session.
+	 * bounded cache and reused until it is evicted.
 	 * 
 	 * @param name an identifying key for this gradient (used to cache it).
 	 * @param height the height of the gradient
@@ -164,15 +220,11 @@ public class PlafPaintUtils {
 	 * @param colors one color for each position.
 	 * @return the vertical gradient.
 	 */
-	synchronized static Paint getVerticalGradient(String name,
+	static Paint getVerticalGradient(String name,
 			int height,int y,
 			float[] positions,
 			Color[] colors) {
-		if(verticalGradients==null) {
-			verticalGradients = new Hashtable<String, TexturePaint>();
-		}
-		
-		String key = name+" "+height+" "+y;
+		GradientKey key = new GradientKey(name, height, y);
 		TexturePaint paint = verticalGradients.get(key);
 		if(paint==null) {
 			height = Math.max(height, 1); //before a component is laid out, it may be 0x0
@@ -194,8 +246,7 @@ public class PlafPaintUtils {
 					array[a] = colors[colors.length-1].getRGB();
 			}
 			bi.getRaster().setDataElements(0, 0, 1, height, array);
-			paint = new TexturePaint( bi, new Rectangle(0,y,1,height) );
-			verticalGradients.put(key,paint);
+			paint = verticalGradients.put(key, new TexturePaint( bi, new Rectangle(0,y,1,height) ));
 		}
 		return paint;
 	}
@@ -219,14 +270,19 @@ public class PlafPaintUtils {
 		);
 	}
 
-	private static Hashtable<String, TexturePaint> checkers;
+	/** The cache used to store checkerboard patterns. */
+	private static final PaintCache<CheckerKey> checkers = new PaintCache<CheckerKey>(CACHE_BYTE_LIMIT);
+	
+	/** @return the cache <code>getCheckerBoard()</code> uses, to monitor its statistics. */
+	public static PaintCache<?> getCheckerBoardCache() {
+		return checkers;
+	}
+	
 	public static TexturePaint getCheckerBoard(int checkerSize) {
 		return getCheckerBoard( checkerSize, Color.white, Color.lightGray );
 	}
 	public static TexturePaint getCheckerBoard(int checkerSize,Color color1,Color color2) {
-		String key = checkerSize+" "+color1.toString()+" "+color2.toString();
-		if(checkers==null)
-			checkers = new Hashtable<String, TexturePaint>();
+		CheckerKey key = new CheckerKey(checkerSize, color1.getRGB(), color2.getRGB());
 		TexturePaint paint = checkers.get(key);
 		if(paint==null) {
 			BufferedImage bi = new BufferedImage(2*checkerSize, 2*checkerSize, BufferedImage.TYPE_INT_RGB);
@@ -237,8 +293,7 @@ public class PlafPaintUtils {
 			g.fillRect(0,0,checkerSize,checkerSize);
 			g.fillRect(checkerSize,checkerSize,checkerSize,checkerSize);
 			g.dispose();
-			paint = new TexturePaint(bi,new Rectangle(0,0,bi.getWidth(),bi.getHeight()));
-			checkers.put(key, paint);
+			paint = checkers.put(key, new TexturePaint(bi,new Rectangle(0,0,bi.getWidth(),bi.getHeight())));
 		}
 		return paint;
 	}
@@ -29,6 +29,10 @@ import java.awt.Insets;
 import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Enumeration;
+import java.util.Locale;
 import java.util.ResourceBundle;
 
 import javax.swing.ButtonGroup;
@@ -48,6 +52,8 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
 import umich.ms.batmass.colorpicker.com.bric.plaf.ColorPickerSliderUI;
+import umich.ms.batmass.colorpicker.com.bric.util.DistinctColors;
+import umich.ms.batmass.colorpicker.com.bric.util.HexColors;
 
 /** <p>This is a panel that offers a robust set of controls to pick a color.
  * <P>This was originally intended to replace the <code>JColorChooser</code>.
@@ -77,8 +83,53 @@ import umich.ms.batmass.colorpicker.com.bric.plaf.ColorPickerSliderUI;
 public class ColorPicker extends JPanel {
 	private static final long serialVersionUID = 3L;
 
-	/** The localized strings used in this (and related) panel(s). */
-	protected static ResourceBundle strings = ResourceBundle.getBundle("umich.ms.batmass.colorpicker.com.bric.swing.resources.ColorPicker");
+	/** The localized strings used in this (and related) panel(s).
+	 * <P>This is kept for subclasses that read it.  It forwards to the bundle
+	 * returned by <code>getStrings()</code>, so the bundle is still only loaded
+	 * when a string is first read.
+	 * @deprecated use <code>getStrings()</code>.
+	 */
+	@Deprecated
+	protected static ResourceBundle strings = new LazyStrings();
+
+	/** The localized strings used in this (and related) panel(s).
+	 * <P>The bundle is loaded the first time a label needs it, so a picker without
+	 * expert controls or opacity controls never loads it.
+	 */
+	protected static ResourceBundle getStrings() {
+		return StringsHolder.strings;
+	}
+
+	/** Defers loading the bundle until <code>getStrings()</code> is first called. */
+	private static class StringsHolder {
+		static final ResourceBundle strings = ResourceBundle.getBundle("umich.ms.batmass.colorpicker.com.bric.swing.resources.ColorPicker");
+	}
+
+	/** The value of the deprecated <code>strings</code> field: a bundle that loads
+	 * the real one the first time it is used.
+	 */
+	private static class LazyStrings extends ResourceBundle {
+		@Override
+		protected Object handleGetObject(String key) {
+			return getStrings().getObject(key);
+		}
+
+		@Override
+		public Enumeration<String> getKeys() {
+			return getStrings().getKeys();
+		}
+
+		@Override
+		public Locale getLocale() {
+			return getStrings().getLocale();
+		}
+	}
+
+	/** The height of the expert controls of the last picker that created them,
+	 * or 0.  A picker whose expert controls haven't been created yet sizes its
+	 * color panel with this.
+	 */
+	private static int expertControlsHeight;
 
 	/** This creates a modal dialog prompting the user to select a color.
 	 * <P>This uses a generic dialog title: "Choose a Color", and does not include opacity.
@@ -118,23 +169,35 @@ public class ColorPicker extends JPanel {
 	 * @return the <code>Color</code> the user chooses, or <code>null</code> if the user cancels the dialog.
 	 */
 	public static Color showDialog(Window owner, String title,Color originalColor,boolean includeOpacity) {
-		ColorPickerDialog d;
-		if(owner instanceof Frame || owner==null) {
-			d = new ColorPickerDialog( (Frame)owner, originalColor, includeOpacity);
-		} else if(owner instanceof Dialog){
-			d = new ColorPickerDialog( (Dialog)owner, originalColor, includeOpacity);
-		} else {
-			throw new IllegalArgumentException("the owner ("+owner.getClass().getName()+") must be a java.awt.Frame or a java.awt.Dialog");
-		}
+		ColorPickerDialog d = ColorPickerDialog.getDialog(owner, originalColor, includeOpacity);
 
 		d.setTitle(title == null ?
-                    strings.getObject("ColorPickerDialogTitle").toString() :
+                    getStrings().getObject("ColorPickerDialogTitle").toString() :
                     title);
 		d.pack();
 		d.setVisible(true);
 		return d.getColor();
 	}
 
+	/** Builds the dialog <code>showDialog()</code> uses for this owner ahead of time,
+	 * so the first call to <code>showDialog()</code> opens it instantly.
+	 * <P>The dialog is built the next time the event dispatch thread is idle, so this
+	 * can be called from any thread; for example when the application starts.
+	 * Later calls to <code>showDialog()</code> with the same owner reuse that dialog.
+	 *
+	 * @param owner the owner the dialog will be shown for.  This must be a Frame, a Dialog or <code>null</code>.
+	 */
+	public static void prewarmDialog(final Window owner) {
+		if(!(owner==null || owner instanceof Frame || owner instanceof Dialog))
+			throw new IllegalArgumentException("the owner ("+owner.getClass().getName()+") must be a java.awt.Frame or a java.awt.Dialog");
+		SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+			public void run() {
+				ColorPickerDialog.getDialog(owner, Color.white, false);
+			}
+		});
+	}
+
 	/** <code>PropertyChangeEvents</code> will be triggered for this property when the selected color
 	 * changes.
 	 * <P>(Events are only created when then RGB values of the color change.  This means, for example,
@@ -175,102 +238,131 @@ public class ColorPicker extends JPanel {
 
 	/** The vertical slider */
 	private JSlider slider = new JSlider(JSlider.VERTICAL,0,100,0);
+	private ColorPickerSliderUI sliderUI;
+
+	/** The selected color.  Every control in this panel writes to
+	 * this model, and is updated from it in <code>updateViews()</code>.
+	 */
+	private ColorPickerModel model = new ColorPickerModel();
+
+	/** The last color reported with a <code>SELECTED_COLOR_PROPERTY</code> event, as 0xAARRGGBB. */
+	private int lastARGB = model.getARGB();
 
-	private int currentRed = 0;
-	private int currentGreen = 0;
-	private int currentBlue = 0;
+	/* Recycled arrays used to read the selected color of the <code>colorPanel</code>. */
+	private final float[] scratchHSB = new float[3];
+	private final int[] scratchRGB = new int[3];
 
+	/** Listens to the controls of this panel and passes the user's input on to the model. */
 	ChangeListener changeListener = new ChangeListener() {
                 @Override
 		public void stateChanged(ChangeEvent e) {
-			Object src = e.getSource();
-
-			if(hue.contains(src) || sat.contains(src) || bri.contains(src)) {
-				if(adjustingSpinners>0)
-					return;
-
-				setHSB( hue.getFloatValue()/360f,
-						sat.getFloatValue()/100f,
-						bri.getFloatValue()/100f );
-			} else if(red.contains(src) || green.contains(src) || blue.contains(src)) {
-				if(adjustingSpinners>0)
-					return;
+			if(adjustingViews>0)
+				return;
 
-				setRGB( red.getIntValue(),
-						green.getIntValue(),
-						blue.getIntValue() );
-			} else if(src==colorPanel) {
-				if(adjustingColorPanel>0)
-					return;
+			Object src = e.getSource();
 
+			if(src==colorPanel) {
 				int mode = getMode();
 				if(mode==HUE || mode==BRI || mode==SAT) {
-					float[] hsb = colorPanel.getHSB();
-					setHSB(hsb[0],hsb[1],hsb[2]);
+					float[] hsb = colorPanel.getHSB(scratchHSB);
+					model.setHSB(hsb[0],hsb[1],hsb[2]);
 				} else {
-					int[] rgb = colorPanel.getRGB();
-					setRGB(rgb[0],rgb[1],rgb[2]);
+					int[] rgb = colorPanel.getRGB(scratchRGB);
+					model.setRGB(rgb[0],rgb[1],rgb[2]);
 				}
 			} else if(src==slider) {
-				if(adjustingSlider>0)
-					return;
-
-				int v = slider.getValue();
-				Option option = getSelectedOption();
-				option.setValue(v);
-			} else if(alpha.contains(src)) {
-				if(adjustingOpacity>0)
-					return;
-				int v = alpha.getIntValue();
-				setOpacity( v );
+				setChannel(getMode(), slider.getValue());
 			} else if(src==opacitySlider) {
-				if(adjustingOpacity>0) return;
-
 				setOpacity( opacitySlider.getValue() );
+			} else if(alpha!=null && alpha.contains(src)) {
+				setOpacity( alpha.getIntValue() );
+			} else if(channelOptions!=null) {
+				for(int channel = 0; channel<channelOptions.length; channel++) {
+					if(channelOptions[channel].contains(src)) {
+						setChannel(channel, channelOptions[channel].getIntValue());
+						return;
+					}
+				}
 			}
 		}
 	};
 
+	/** Updates every control (and fires property changes) once per model transaction. */
+	ChangeListener modelListener = new ChangeListener() {
+                @Override
+		public void stateChanged(ChangeEvent e) {
+			updateViews();
+		}
+	};
+
+	/** Changes one channel of the selected color, leaving the others as they are.
+	 *
+	 * @param channel HUE, SAT, BRI, RED, GREEN or BLUE.
+	 * @param v the value as displayed in the spinners: [0,360] for hue,
+	 * [0,100] for saturation and brightness, and [0,255] for RGB values.
+	 */
+	private void setChannel(int channel,int v) {
+		if(channel==HUE) {
+			model.setHSB(v/360f, model.getSaturation(), model.getBrightness());
+		} else if(channel==SAT) {
+			model.setHSB(model.getHue(), v/100f, model.getBrightness());
+		} else if(channel==BRI) {
+			model.setHSB(model.getHue(), model.getSaturation(), v/100f);
+		} else if(channel==RED) {
+			model.setRGB(v, model.getGreen(), model.getBlue());
+		} else if(channel==GREEN) {
+			model.setRGB(model.getRed(), v, model.getBlue());
+		} else if(channel==BLUE) {
+			model.setRGB(model.getRed(), model.getGreen(), v);
+		}
+	}
+
 	ActionListener actionListener = new ActionListener() {
                 @Override
 		public void actionPerformed(ActionEvent e) {
 			Object src = e.getSource();
-			if(src==hue.radioButton) {
-				setMode(HUE);
-			} else if(src==bri.radioButton) {
-				setMode(BRI);
-			} else if(src==sat.radioButton) {
-				setMode(SAT);
-			} else if(src==red.radioButton) {
-				setMode(RED);
-			} else if(src==green.radioButton) {
-				setMode(GREEN);
-			} else if(src==blue.radioButton) {
-				setMode(BLUE);
+			for(int channel = 0; channel<channelOptions.length; channel++) {
+				if(src==channelOptions[channel].radioButton) {
+					setMode(channel);
+					return;
+				}
 			}
 		}
 	};
 
-	/** @return the currently selected <code>Option</code>
+	/** Returns the value of a channel of the selected color, as displayed in the spinners.
+	 *
+	 * @param channel HUE, SAT, BRI, RED, GREEN or BLUE.
+	 * @return [0,360] for hue, [0,100] for saturation and brightness, and [0,255] for RGB values.
 	 */
-	private Option getSelectedOption() {
-		int mode = getMode();
-		if(mode==HUE) {
-			return hue;
-		} else if(mode==SAT) {
-			return sat;
-		} else if(mode==BRI) {
-			return bri;
-		} else if(mode==RED) {
-			return red;
-		} else if(mode==GREEN) {
-			return green;
+	private int getChannelValue(int channel) {
+		if(channel==HUE) {
+			return (int)(model.getHue()*360f+.49f);
+		} else if(channel==SAT) {
+			return (int)(model.getSaturation()*100f+.49f);
+		} else if(channel==BRI) {
+			return (int)(model.getBrightness()*100f+.49f);
+		} else if(channel==RED) {
+			return model.getRed();
+		} else if(channel==GREEN) {
+			return model.getGreen();
 		} else {
-			return blue;
+			return model.getBlue();
+		}
+	}
+
+	/** @return the maximum value of a channel, as displayed in the spinners. */
+	private static int getChannelMaximum(int channel) {
+		if(channel==HUE) {
+			return 360;
+		} else if(channel==SAT || channel==BRI) {
+			return 100;
 		}
+		return 255;
 	}
 
-	HexDocumentListener hexDocListener = new HexDocumentListener();
+	/** Listens to the hex field.  This is <code>null</code> until the expert controls are created. */
+	HexDocumentListener hexDocListener;
 
 	class SetRGBRunnable implements Runnable {
 		final int red, green, blue;
@@ -312,7 +404,7 @@ public class ColorPicker extends JPanel {
 
                 @Override
 		public void changedUpdate(DocumentEvent e) {
-			if(adjustingHexField>0)
+			if(adjustingViews>0)
 				return;
 
 			String s = hexField.getText();
@@ -332,30 +424,24 @@ public class ColorPicker extends JPanel {
 				}
 			}
 
-			try {
-				int i = Integer.parseInt(s,16);
-				int red = ((i >> 16) & 0xff);
-				int green = ((i >> 8) & 0xff);
-				int blue = ((i) & 0xff);
+			int i = HexColors.parse(s);
+			int red = ((i >> 16) & 0xff);
+			int green = ((i >> 8) & 0xff);
+			int blue = ((i) & 0xff);
 
-				if(delay) {
-					delayedUpdater.setRepeats(false);
-					delayedUpdater.restart();
-					uncommittedText = s;
-				} else {
-					delayedUpdater.stop();
-
-					/* Be sure to invoke this separately, otherwise we'll risk getting
-					 * a "attempt to mutate in notification".
-					 * ( https://java.net/jira/browse/JAVAGRAPHICS-19 )
-					 */
-					SwingUtilities.invokeLater(new SetRGBRunnable(red, green, blue));
-					uncommittedText = null;
-				}
-				return;
-			} catch(NumberFormatException e2) {
-				//this shouldn't happen, since we already stripped out non-hex characters.
-				e2.printStackTrace();
+			if(delay) {
+				delayedUpdater.setRepeats(false);
+				delayedUpdater.restart();
+				uncommittedText = s;
+			} else {
+				delayedUpdater.stop();
+
+				/* Be sure to invoke this separately, otherwise we'll risk getting
+				 * a "attempt to mutate in notification".
+				 * ( https://java.net/jira/browse/JAVAGRAPHICS-19 )
+				 */
+				SwingUtilities.invokeLater(new SetRGBRunnable(red, green, blue));
+				uncommittedText = null;
 			}
 		}
 
@@ -388,51 +474,42 @@ public class ColorPicker extends JPanel {
 		}
 	};
 
-	private Option alpha = new Option(strings.getObject("alphaLabel").toString(), 255);
-	private Option hue = new Option(strings.getObject("hueLabel").toString(), 360);
-	private Option sat = new Option(strings.getObject("saturationLabel").toString(), 100);
-	private Option bri = new Option(strings.getObject("brightnessLabel").toString(), 100);
-	private Option red = new Option(strings.getObject("redLabel").toString(), 255);
-	private Option green = new Option(strings.getObject("greenLabel").toString(), 255);
-	private Option blue = new Option(strings.getObject("blueLabel").toString(), 255);
-	private ColorSwatch preview = new ColorSwatch(50);
-	private JLabel hexLabel = new JLabel(strings.getObject("hexLabel").toString());
-	private JTextField hexField = new JTextField("000000");
-
-	/** Used to indicate when we're internally adjusting the value of the spinners.
-	 * If this equals zero, then incoming events are triggered by the user and must be processed.
-	 * If this is not equal to zero, then incoming events are triggered by another method
-	 * that's already responding to the user's actions.
+	/* The spinners, the hex field and the opacity controls are created the first
+	 * time they are displayed (see <code>createExpertControls()</code> and
+	 * <code>createOpacityControls()</code>), so until then these fields are <code>null</code>.
 	 */
-	private int adjustingSpinners = 0;
 
-	/** Used to indicate when we're internally adjusting the value of the slider.
-	 * If this equals zero, then incoming events are triggered by the user and must be processed.
-	 * If this is not equal to zero, then incoming events are triggered by another method
-	 * that's already responding to the user's actions.
-	 */
-	private int adjustingSlider = 0;
+	/** The options for each channel, indexed by HUE, SAT, BRI, RED, GREEN and BLUE. */
+	private Option[] channelOptions;
+	private Option alpha;
+	private JLabel hexLabel;
+	private JTextField hexField;
 
-	/** Used to indicate when we're internally adjusting the selected color of the ColorPanel.
-	 * If this equals zero, then incoming events are triggered by the user and must be processed.
-	 * If this is not equal to zero, then incoming events are triggered by another method
-	 * that's already responding to the user's actions.
+	private ColorSwatch preview = new ColorSwatch(50);
+
+	/** The swatch that offers the color most different from <code>colorsInUse</code>.
+	 * This is <code>null</code> until <code>setColorsInUse()</code> is called.
 	 */
-	private int adjustingColorPanel = 0;
+	private ColorSwatch distinctSwatch;
+	private int[] colorsInUse;
 
-	/** Used to indicate when we're internally adjusting the value of the hex field.
-	 * If this equals zero, then incoming events are triggered by the user and must be processed.
-	 * If this is not equal to zero, then incoming events are triggered by another method
-	 * that's already responding to the user's actions.
+	/** The strip of favorite and recent colors under the color panel.
+	 * This is <code>null</code> until <code>setColorStore()</code> is called.
 	 */
-	private int adjustingHexField = 0;
+	private ColorStoreStrip colorStoreStrip;
+
+	/* Whether controls should be visible once they are created. */
+	private boolean hexControlsVisible = true;
+	private boolean rgbControlsVisible = true;
+	private boolean hsbControlsVisible = true;
+	private boolean opacityVisible = true;
 
-	/** Used to indicate when we're internally adjusting the value of the opacity.
+	/** Used to indicate when we're internally adjusting the controls to match the model.
 	 * If this equals zero, then incoming events are triggered by the user and must be processed.
-	 * If this is not equal to zero, then incoming events are triggered by another method
-	 * that's already responding to the user's actions.
+	 * If this is not equal to zero, then incoming events are triggered by <code>updateViews()</code>
+	 * and must be ignored.
 	 */
-	private int adjustingOpacity = 0;
+	private int adjustingViews = 0;
 
 	/** The "expert" controls are the controls on the right side
 	 * of this panel: the labels/spinners/radio buttons.
@@ -441,8 +518,8 @@ public class ColorPicker extends JPanel {
 
 	private ColorPickerPanel colorPanel = new ColorPickerPanel();
 
-	private JSlider opacitySlider = new JSlider(0,255,255);
-	private JLabel opacityLabel = new JLabel(strings.getObject("opacityLabel").toString());
+	private JSlider opacitySlider;
+	private JLabel opacityLabel;
 
 	/** Create a new <code>ColorPicker</code> with all controls visible except opacity. */
 	public ColorPicker() {
@@ -464,6 +541,81 @@ public class ColorPicker extends JPanel {
 
 		Insets normalInsets = new Insets(3,3,3,3);
 
+		c.gridx = 0; c.gridy = 0; c.weightx = 1;
+		c.weighty = 1; c.fill = GridBagConstraints.BOTH;
+		c.anchor = GridBagConstraints.CENTER; c.insets = normalInsets;
+		c.gridwidth = 2;
+		add(colorPanel,c);
+
+		c.gridwidth = 1;
+		c.insets = normalInsets;
+		c.gridx+=2; c.weighty = 1; c.gridwidth = 1;
+		c.fill = GridBagConstraints.VERTICAL; c.weightx = 0;
+		add(slider,c);
+
+		c.gridx++; c.fill = GridBagConstraints.VERTICAL; c.gridheight = GridBagConstraints.REMAINDER;
+		c.anchor = GridBagConstraints.CENTER; c.insets = new Insets(0,0,0,0);
+		add(expertControls,c);
+
+		c.gridx = 0; c.gridy = 0;
+		c.gridheight = 1; c.gridwidth = 1;
+		c.fill = GridBagConstraints.BOTH;
+		c.weighty = 1; c.anchor = GridBagConstraints.CENTER;
+		c.weightx = 1;
+		c.insets = new Insets(normalInsets.top,normalInsets.left+8,normalInsets.bottom+10,normalInsets.right+8);
+		expertControls.add(preview,c);
+
+		preview.setOpaque(true);
+		updateColorPanelSize();
+
+		slider.addChangeListener(changeListener);
+		colorPanel.addChangeListener(changeListener);
+		sliderUI = new ColorPickerSliderUI(slider,this);
+		slider.setUI(sliderUI);
+		model.addChangeListener(modelListener);
+		setMode(BRI);
+
+		setExpertControlsVisible(showExpertControls);
+
+		setOpacityVisible(includeOpacity);
+
+		setOpaque(this,false);
+	}
+
+	/** Creates the expert controls if they are about to be displayed. */
+	@Override
+	public void addNotify() {
+		if(expertControls.isVisible())
+			createExpertControls();
+		super.addNotify();
+	}
+
+	/** Creates the spinners, radio buttons and hex field in the expert controls,
+	 * if they haven't been created yet.
+	 * <P>These make up most of the cost of a <code>ColorPicker</code>, so they
+	 * are only created when the expert controls are first displayed (or when
+	 * <code>getExpertControls()</code> is called).
+	 */
+	private void createExpertControls() {
+		if(channelOptions!=null)
+			return;
+
+		ResourceBundle strings = getStrings();
+		channelOptions = new Option[6];
+		channelOptions[HUE] = new Option(strings.getObject("hueLabel").toString(), 360);
+		channelOptions[SAT] = new Option(strings.getObject("saturationLabel").toString(), 100);
+		channelOptions[BRI] = new Option(strings.getObject("brightnessLabel").toString(), 100);
+		channelOptions[RED] = new Option(strings.getObject("redLabel").toString(), 255);
+		channelOptions[GREEN] = new Option(strings.getObject("greenLabel").toString(), 255);
+		channelOptions[BLUE] = new Option(strings.getObject("blueLabel").toString(), 255);
+		alpha = new Option(strings.getObject("alphaLabel").toString(), 255);
+		hexLabel = new JLabel(strings.getObject("hexLabel").toString());
+		hexField = new JTextField("000000");
+		hexDocListener = new HexDocumentListener();
+
+		GridBagConstraints c = new GridBagConstraints();
+		Insets normalInsets = new Insets(3,3,3,3);
+
 		JPanel options = new JPanel(new GridBagLayout());
 		c.gridx = 0; c.gridy = 0; c.weightx = 1; c.weighty = 1;
 		c.insets = normalInsets;
@@ -471,7 +623,8 @@ public class ColorPicker extends JPanel {
 
 		//put them in order
 		Option[] optionsArray = new Option[] {
-				hue, sat, bri, red, green, blue
+				channelOptions[HUE], channelOptions[SAT], channelOptions[BRI],
+				channelOptions[RED], channelOptions[GREEN], channelOptions[BLUE]
 		};
 
 		for(int a = 0; a<optionsArray.length; a++) {
@@ -510,61 +663,69 @@ public class ColorPicker extends JPanel {
 		c.anchor = GridBagConstraints.WEST; c.fill = GridBagConstraints.HORIZONTAL;
 		options.add(alpha.spinner,c);
 
-		c.gridx = 0; c.gridy = 0; c.weightx = 1;
-		c.weighty = 1; c.fill = GridBagConstraints.BOTH;
-		c.anchor = GridBagConstraints.CENTER; c.insets = normalInsets;
-		c.gridwidth = 2;
-		add(colorPanel,c);
-
-		c.gridwidth = 1;
-		c.insets = normalInsets;
-		c.gridx+=2; c.weighty = 1; c.gridwidth = 1;
-		c.fill = GridBagConstraints.VERTICAL; c.weightx = 0;
-		add(slider,c);
-
-		c.gridx++; c.fill = GridBagConstraints.VERTICAL; c.gridheight = GridBagConstraints.REMAINDER;
-		c.anchor = GridBagConstraints.CENTER; c.insets = new Insets(0,0,0,0);
-		add(expertControls,c);
-
-		c.gridx = 0; c.gridheight = 1;
-		c.gridy = 1; c.weightx = 0; c.weighty = 0;
-		c.insets = normalInsets; c.anchor = GridBagConstraints.CENTER;
-		add(opacityLabel,c);
-		c.gridx++; c.gridwidth = 2;
-		c.weightx = 1; c.fill = GridBagConstraints.HORIZONTAL;
-		add(opacitySlider,c);
-
-		c.gridx = 0; c.gridy = 0;
+		c.gridx = 0; c.gridy = 1;
 		c.gridheight = 1; c.gridwidth = 1;
 		c.fill = GridBagConstraints.BOTH;
-		c.weighty = 1; c.anchor = GridBagConstraints.CENTER;
+		c.weighty = 0; c.anchor = GridBagConstraints.CENTER;
 		c.weightx = 1;
-		c.insets = new Insets(normalInsets.top,normalInsets.left+8,normalInsets.bottom+10,normalInsets.right+8);
-		expertControls.add(preview,c);
-		c.gridy++; c.weighty = 0; c.anchor = GridBagConstraints.CENTER;
 		c.insets = new Insets(normalInsets.top,normalInsets.left,0,normalInsets.right);
 		expertControls.add(options,c);
 
-		preview.setOpaque(true);
-		colorPanel.setPreferredSize(new Dimension(expertControls.getPreferredSize().height,
-												expertControls.getPreferredSize().height));
+		updateColorPanelSize();
 
-		slider.addChangeListener(changeListener);
-		colorPanel.addChangeListener(changeListener);
-		slider.setUI(new ColorPickerSliderUI(slider,this));
+		setOpaque(options,false);
 		hexField.getDocument().addDocumentListener(hexDocListener);
-		setMode(BRI);
 
-		setExpertControlsVisible(showExpertControls);
+		int mode = getMode();
+		for(int channel = 0; channel<channelOptions.length; channel++) {
+			channelOptions[channel].radioButton.setSelected(mode==channel);
+		}
+		setHexControlsVisible(hexControlsVisible);
+		setHSBControlsVisible(hsbControlsVisible);
+		setRGBControlsVisible(rgbControlsVisible);
+		setOpacityVisible(opacityVisible);
+		updateViews();
+		revalidate();
+	}
 
-		setOpacityVisible(includeOpacity);
+	/** Makes the color panel as tall (and as wide) as the expert controls.
+	 * <P>Until this picker's expert controls are created their height is unknown, so
+	 * the height of the last expert controls created is used instead.  If no picker
+	 * has created them yet the color panel keeps its default size.
+	 */
+	private void updateColorPanelSize() {
+		int height;
+		synchronized(ColorPicker.class) {
+			if(channelOptions!=null)
+				expertControlsHeight = expertControls.getPreferredSize().height;
+			height = expertControlsHeight;
+		}
+		if(height>0)
+			colorPanel.setPreferredSize(new Dimension(height, height));
+	}
 
-		opacitySlider.addChangeListener(changeListener);
+	/** Creates the opacity slider and its label, if they haven't been created yet. */
+	private void createOpacityControls() {
+		if(opacitySlider!=null)
+			return;
 
-		setOpacity( 255 );
-		setOpaque(this,false);
+		opacitySlider = new JSlider(0,255,model.getOpacity());
+		opacityLabel = new JLabel(getStrings().getObject("opacityLabel").toString());
+
+		GridBagConstraints c = new GridBagConstraints();
+		c.gridx = 0; c.gridheight = 1;
+		c.gridy = 1; c.weightx = 0; c.weighty = 0;
+		c.insets = new Insets(3,3,3,3); c.anchor = GridBagConstraints.CENTER;
+		c.fill = GridBagConstraints.VERTICAL;
+		add(opacityLabel,c);
+		c.gridx++; c.gridwidth = 2;
+		c.weightx = 1; c.fill = GridBagConstraints.HORIZONTAL;
+		add(opacitySlider,c);
 
-		preview.setForeground( getColor() );
+		opacityLabel.setOpaque(false);
+		opacitySlider.setOpaque(false);
+		opacitySlider.addChangeListener(changeListener);
+		revalidate();
 	}
 
 	private static void setOpaque(JComponent jc,boolean opaque) {
@@ -586,8 +747,11 @@ public class ColorPicker extends JPanel {
 	 * has been called, then calling this method makes no difference: the hex controls will be hidden.
 	 */
 	public void setHexControlsVisible(boolean b) {
-		hexLabel.setVisible(b);
-		hexField.setVisible(b);
+		hexControlsVisible = b;
+		if(hexField!=null) {
+			hexLabel.setVisible(b);
+			hexField.setVisible(b);
+		}
 	}
 
 	/** This controls whether the preview swatch visible or not.
@@ -606,6 +770,8 @@ public class ColorPicker extends JPanel {
 	 * @param b whether to show or hide the expert controls.
 	 */
 	public void setExpertControlsVisible(boolean b) {
+		if(b && isDisplayable())
+			createExpertControls();
 		expertControls.setVisible(b);
 	}
 
@@ -614,11 +780,17 @@ public class ColorPicker extends JPanel {
 	 *
 	 */
 	public float[] getHSB() {
-		return new float[] {
-				hue.getFloatValue()/360f,
-				sat.getFloatValue()/100f,
-				bri.getFloatValue()/100f
-		};
+		return model.getHSB();
+	}
+
+	/** Stores the current HSB coordinates of this <code>ColorPicker</code> in an existing array.
+	 * Each value is between [0,1].
+	 *
+	 * @param dest an array of at least 3 elements.
+	 * @return <code>dest</code>.
+	 */
+	public float[] getHSB(float[] dest) {
+		return model.getHSB(dest);
 	}
 
 	/** @return the current RGB coordinates of this <code>ColorPicker</code>.
@@ -626,11 +798,26 @@ public class ColorPicker extends JPanel {
 	 *
 	 */
 	public int[] getRGB() {
-		return new int[] {
-				currentRed,
-				currentGreen,
-				currentBlue
-		};
+		return model.getRGB();
+	}
+
+	/** Stores the current RGB coordinates of this <code>ColorPicker</code> in an existing array.
+	 * Each value is between [0,255].
+	 *
+	 * @param dest an array of at least 3 elements.
+	 * @return <code>dest</code>.
+	 */
+	public int[] getRGB(int[] dest) {
+		return model.getRGB(dest);
+	}
+
+	/** @return the current color of this <code>ColorPicker</code>, including its opacity,
+	 * packed in an int as 0xAARRGGBB.
+	 * <P>This is the same value <code>getColor().getRGB()</code> returns, without
+	 * creating a <code>Color</code>.
+	 */
+	public int getARGB() {
+		return model.getARGB();
 	}
 
 	/** Returns the currently selected opacity (a float between 0 and 1).
@@ -638,9 +825,10 @@ public class ColorPicker extends JPanel {
 	 * @return the currently selected opacity (a float between 0 and 1).
 	 */
 	public float getOpacity() {
-		return (opacitySlider.getValue())/255f;
+		return model.getOpacity()/255f;
 	}
 
+	/** The last opacity reported with an <code>OPACITY_PROPERTY</code> event. */
 	private int lastOpacity = 255;
 
 	/** Sets the currently selected opacity.
@@ -648,21 +836,7 @@ public class ColorPicker extends JPanel {
 	 * @param v an int between 0 and 255.
 	 */
 	public void setOpacity(int v) {
-		if(v<0 || v>255)
-			throw new IllegalArgumentException("The opacity ("+v+") must be between 0 and 255.");
-		adjustingOpacity++;
-		try {
-			opacitySlider.setValue( v );
-			alpha.spinner.setValue( new Integer(v) );
-			if(lastOpacity!=v) {
-				firePropertyChange(OPACITY_PROPERTY,new Integer(lastOpacity),new Integer(v));
-				Color c = preview.getForeground();
-				preview.setForeground(new Color(c.getRed(), c.getGreen(), c.getBlue(), v));
-			}
-			lastOpacity = v;
-		} finally {
-			adjustingOpacity--;
-		}
+		model.setOpacity(v);
 	}
 
 	/** Sets the mode of this <code>ColorPicker</code>.
@@ -675,37 +849,22 @@ public class ColorPicker extends JPanel {
 		if(!(mode==HUE || mode==SAT || mode==BRI || mode==RED || mode==GREEN || mode==BLUE))
 			throw new IllegalArgumentException("mode must be HUE, SAT, BRI, REd, GREEN, or BLUE");
 		putClientProperty(MODE_PROPERTY,new Integer(mode));
-		hue.radioButton.setSelected(mode==HUE);
-		sat.radioButton.setSelected(mode==SAT);
-		bri.radioButton.setSelected(mode==BRI);
-		red.radioButton.setSelected(mode==RED);
-		green.radioButton.setSelected(mode==GREEN);
-		blue.radioButton.setSelected(mode==BLUE);
+		if(channelOptions!=null) {
+			for(int channel = 0; channel<channelOptions.length; channel++) {
+				channelOptions[channel].radioButton.setSelected(mode==channel);
+			}
+		}
 
 		colorPanel.setMode(mode);
-		adjustingSlider++;
+		adjustingViews++;
 		try {
 			slider.setValue(0);
-			Option option = getSelectedOption();
 			slider.setInverted(mode==HUE);
-			int max = option.getMaximum();
-			slider.setMaximum(max);
-			slider.setValue( option.getIntValue() );
-			slider.repaint();
-
-			if(mode==HUE || mode==SAT || mode==BRI) {
-				setHSB( hue.getFloatValue()/360f,
-						sat.getFloatValue()/100f,
-						bri.getFloatValue()/100f );
-			} else {
-				setRGB( red.getIntValue(),
-						green.getIntValue(),
-						blue.getIntValue() );
-
-			}
+			slider.setMaximum(getChannelMaximum(mode));
 		} finally {
-			adjustingSlider--;
+			adjustingViews--;
 		}
+		updateViews();
 	}
 
 	/** This controls whether the radio buttons that adjust the mode are visible.
@@ -716,12 +875,12 @@ public class ColorPicker extends JPanel {
 	 * @param b
 	 */
 	public void setModeControlsVisible(boolean b) {
-		hue.radioButton.setVisible(b && hue.isVisible());
-		sat.radioButton.setVisible(b && sat.isVisible());
-		bri.radioButton.setVisible(b && bri.isVisible());
-		red.radioButton.setVisible(b && red.isVisible());
-		green.radioButton.setVisible(b && green.isVisible());
-		blue.radioButton.setVisible(b && blue.isVisible());
+		if(channelOptions!=null) {
+			for(int channel = 0; channel<channelOptions.length; channel++) {
+				Option option = channelOptions[channel];
+				option.radioButton.setVisible(b && option.isVisible());
+			}
+		}
 		putClientProperty(MODE_CONTROLS_VISIBLE_PROPERTY,new Boolean(b));
 	}
 
@@ -738,12 +897,11 @@ public class ColorPicker extends JPanel {
 	}
 
 	/** Sets the current color of this <code>ColorPicker</code>.
-	 * This method simply calls <code>setRGB()</code> and <code>setOpacity()</code>.
+	 * This method sets the RGB values and the opacity in one transaction.
 	 * @param c the new color to use.
 	 */
 	public void setColor(Color c) {
-		setRGB(c.getRed(),c.getGreen(),c.getBlue());
-		setOpacity(c.getAlpha());
+		model.setColor(c);
 	}
 
 	/** Sets the current color of this <code>ColorPicker</code>
@@ -753,45 +911,7 @@ public class ColorPicker extends JPanel {
 	 * @param b the blue value.  Must be between [0,255].
 	 */
 	public void setRGB(int r,int g,int b) {
-		if(r<0 || r>255)
-			throw new IllegalArgumentException("The red value ("+r+") must be between [0,255].");
-		if(g<0 || g>255)
-			throw new IllegalArgumentException("The green value ("+g+") must be between [0,255].");
-		if(b<0 || b>255)
-			throw new IllegalArgumentException("The blue value ("+b+") must be between [0,255].");
-
-		Color lastColor = getColor();
-
-		boolean updateRGBSpinners = adjustingSpinners==0;
-
-		adjustingSpinners++;
-		adjustingColorPanel++;
-		int alpha = this.alpha.getIntValue();
-		try {
-			if(updateRGBSpinners) {
-				red.setValue(r);
-				green.setValue(g);
-				blue.setValue(b);
-			}
-			preview.setForeground(new Color(r,g,b, alpha));
-			float[] hsb = new float[3];
-			Color.RGBtoHSB(r, g, b, hsb);
-			hue.setValue( (int)(hsb[0]*360f+.49f));
-			sat.setValue( (int)(hsb[1]*100f+.49f));
-			bri.setValue( (int)(hsb[2]*100f+.49f));
-			colorPanel.setRGB(r, g, b);
-			updateHexField();
-			updateSlider();
-		} finally {
-			adjustingSpinners--;
-			adjustingColorPanel--;
-		}
-		currentRed = r;
-		currentGreen = g;
-		currentBlue = b;
-		Color newColor = getColor();
-		if(lastColor.equals(newColor)==false)
-			firePropertyChange(SELECTED_COLOR_PROPERTY,lastColor,newColor);
+		model.setRGB(r, g, b);
 	}
 
 	/** @return the current <code>Color</code> this <code>ColorPicker</code> has selected.
@@ -800,31 +920,82 @@ public class ColorPicker extends JPanel {
 	 * <BR><code>return new Color(i[0], i[1], i[2], opacitySlider.getValue());</code>
 	 */
 	public Color getColor() {
-		int[] i = getRGB();
-		return new Color(i[0], i[1], i[2], opacitySlider.getValue());
+		return model.getColor();
 	}
 
-	private void updateSlider() {
-		adjustingSlider++;
+	/** @return the model that stores the selected color of this <code>ColorPicker</code>.
+	 * <P>Use its <code>beginUpdate()</code> and <code>endUpdate()</code> methods to
+	 * make several changes while only updating the controls once.
+	 */
+	public ColorPickerModel getModel() {
+		return model;
+	}
+
+	/** Updates every control to match the model, and fires property change
+	 * events if the selected color or the opacity changed.
+	 * <P>This is called once per model transaction.  Controls whose values are already
+	 * correct are left alone, so they don't repaint or notify their own listeners.
+	 */
+	private void updateViews() {
+		int r = model.getRed();
+		int g = model.getGreen();
+		int b = model.getBlue();
+		int a = model.getOpacity();
+		float h = model.getHue();
+		float s = model.getSaturation();
+		float v = model.getBrightness();
+
+		adjustingViews++;
 		try {
+			if(channelOptions!=null) {
+				for(int channel = 0; channel<channelOptions.length; channel++) {
+					channelOptions[channel].setValue(getChannelValue(channel));
+				}
+				alpha.setValue(a);
+				updateHexField();
+			}
+			if(opacitySlider!=null && opacitySlider.getValue()!=a)
+				opacitySlider.setValue(a);
+
+			Color c = preview.getForeground();
+			if(c==null || c.getRed()!=r || c.getGreen()!=g || c.getBlue()!=b || c.getAlpha()!=a)
+				preview.setForeground(new Color(r, g, b, a));
+
 			int mode = getMode();
-			if(mode==HUE) {
-				slider.setValue( hue.getIntValue() );
-			} else if(mode==SAT) {
-				slider.setValue( sat.getIntValue() );
-			} else if(mode==BRI) {
-				slider.setValue( bri.getIntValue() );
-			} else if(mode==RED) {
-				slider.setValue( red.getIntValue() );
-			} else if(mode==GREEN) {
-				slider.setValue( green.getIntValue() );
-			} else if(mode==BLUE) {
-				slider.setValue( blue.getIntValue() );
+			if(mode==HUE || mode==SAT || mode==BRI) {
+				colorPanel.setHSB(h, s, v);
+			} else {
+				colorPanel.setRGB(r, g, b);
 			}
+			updateSlider();
+		} finally {
+			adjustingViews--;
+		}
+
+		int newARGB = model.getARGB();
+		if(lastARGB!=newARGB) {
+			int oldARGB = lastARGB;
+			lastARGB = newARGB;
+			if((oldARGB & 0xffffff)!=(newARGB & 0xffffff))
+				firePropertyChange(SELECTED_COLOR_PROPERTY,new Color(oldARGB, true),new Color(newARGB, true));
+		}
+		if(lastOpacity!=a) {
+			int oldOpacity = lastOpacity;
+			lastOpacity = a;
+			firePropertyChange(OPACITY_PROPERTY,new Integer(oldOpacity),new Integer(a));
+		}
+	}
+
+	private void updateSlider() {
+		adjustingViews++;
+		try {
+			int v = getChannelValue(getMode());
+			if(slider.getValue()!=v)
+				slider.setValue(v);
 		} finally {
-			adjustingSlider--;
+			adjustingViews--;
 		}
-		slider.repaint();
+		sliderUI.updateTrack();
 	}
 
 	/** This returns the panel with several rows of spinner controls.
@@ -835,6 +1006,7 @@ public class ColorPicker extends JPanel {
 	 * @return the panel with several rows of spinner controls.
 	 */
 	public JPanel getExpertControls() {
+		createExpertControls();
 		return expertControls;
 	}
 
@@ -845,9 +1017,12 @@ public class ColorPicker extends JPanel {
 	 * @param b whether the controls should be visible or not.
 	 */
 	public void setRGBControlsVisible(boolean b) {
-		red.setVisible(b);
-		green.setVisible(b);
-		blue.setVisible(b);
+		rgbControlsVisible = b;
+		if(channelOptions!=null) {
+			channelOptions[RED].setVisible(b);
+			channelOptions[GREEN].setVisible(b);
+			channelOptions[BLUE].setVisible(b);
+		}
 	}
 
 	/** This shows or hides the HSB spinner controls.
@@ -857,9 +1032,12 @@ public class ColorPicker extends JPanel {
 	 * @param b whether the controls should be visible or not.
 	 */
 	public void setHSBControlsVisible(boolean b) {
-		hue.setVisible(b);
-		sat.setVisible(b);
-		bri.setVisible(b);
+		hsbControlsVisible = b;
+		if(channelOptions!=null) {
+			channelOptions[HUE].setVisible(b);
+			channelOptions[SAT].setVisible(b);
+			channelOptions[BRI].setVisible(b);
+		}
 	}
 
 	/** This shows or hides the alpha controls.
@@ -869,10 +1047,100 @@ public class ColorPicker extends JPanel {
 	 * @param b
 	 */
 	public void setOpacityVisible(boolean b) {
-		opacityLabel.setVisible(b);
-		opacitySlider.setVisible(b);
-		alpha.label.setVisible(b);
-		alpha.spinner.setVisible(b);
+		opacityVisible = b;
+		if(b)
+			createOpacityControls();
+		if(opacitySlider!=null) {
+			opacityLabel.setVisible(b);
+			opacitySlider.setVisible(b);
+		}
+		if(alpha!=null) {
+			alpha.label.setVisible(b);
+			alpha.spinner.setVisible(b);
+		}
+	}
+
+	/** Tells this picker which colors are already in use (for example by other
+	 * series in the same plot).
+	 * <P>This shows a small swatch under the preview with the color that is most different
+	 * from all of these colors (see <code>DistinctColors</code>).  Clicking that swatch
+	 * selects its color.  Like the preview, this swatch lives inside the "expert controls".
+	 *
+	 * @param argb the colors in use, packed as 0xAARRGGBB, or <code>null</code> to hide the swatch.
+	 */
+	public void setColorsInUse(int[] argb) {
+		colorsInUse = argb==null ? null : argb.clone();
+		if(colorsInUse==null) {
+			if(distinctSwatch!=null)
+				distinctSwatch.setVisible(false);
+			return;
+		}
+		if(distinctSwatch==null) {
+			distinctSwatch = new ColorSwatch(20);
+			distinctSwatch.setOpaque(false);
+			distinctSwatch.setToolTipText(getStrings().getObject("nextDistinctColorToolTip").toString());
+			distinctSwatch.addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseClicked(MouseEvent e) {
+					if(SwingUtilities.isLeftMouseButton(e)) {
+						Color c = distinctSwatch.getForeground();
+						setRGB(c.getRed(), c.getGreen(), c.getBlue());
+					}
+				}
+			});
+
+			GridBagConstraints c = new GridBagConstraints();
+			c.gridx = 0; c.gridy = 2;
+			c.anchor = GridBagConstraints.CENTER;
+			c.insets = new Insets(0,3,3,3);
+			expertControls.add(distinctSwatch,c);
+			expertControls.revalidate();
+		}
+		distinctSwatch.setForeground(new Color(getNextDistinctColor()));
+		distinctSwatch.setVisible(true);
+	}
+
+	/** @return the color most different from the colors passed to <code>setColorsInUse()</code>,
+	 * packed as 0xAARRGGBB.  If no colors are in use this is the first color of
+	 * <code>DistinctColors.getDefault().generate()</code>.
+	 */
+	public int getNextDistinctColor() {
+		return DistinctColors.getDefault().next(colorsInUse);
+	}
+
+	/** Shows the favorite and recent colors of a store in a strip under the color panel.
+	 * Clicking one of them selects it.
+	 * <P>This doesn't record anything in the store: the dialog from <code>showDialog()</code>
+	 * adds the color the user chooses to the recent colors of <code>ColorStore.getDefault()</code>,
+	 * and other callers can call <code>ColorStore.addRecent()</code> when appropriate.
+	 *
+	 * @param store the colors to show, or <code>null</code> to hide the strip.
+	 */
+	public void setColorStore(ColorStore store) {
+		if(store==null) {
+			if(colorStoreStrip!=null) {
+				colorStoreStrip.setStore(null);
+				colorStoreStrip.setVisible(false);
+			}
+			return;
+		}
+		if(colorStoreStrip==null) {
+			colorStoreStrip = new ColorStoreStrip(this);
+			GridBagConstraints c = new GridBagConstraints();
+			c.gridx = 0; c.gridy = 2; c.gridwidth = 3;
+			c.weightx = 1; c.weighty = 0;
+			c.fill = GridBagConstraints.HORIZONTAL; c.anchor = GridBagConstraints.WEST;
+			c.insets = new Insets(3,3,3,3);
+			add(colorStoreStrip,c);
+			revalidate();
+		}
+		colorStoreStrip.setStore(store);
+		colorStoreStrip.setVisible(true);
+	}
+
+	/** @return the store passed to <code>setColorStore()</code>, or <code>null</code>. */
+	public ColorStore getColorStore() {
+		return colorStoreStrip==null ? null : colorStoreStrip.getStore();
 	}
 
 	/** @return the <code>ColorPickerPanel</code> this <code>ColorPicker</code> displays. */
@@ -887,68 +1155,28 @@ public class ColorPicker extends JPanel {
 	 * @param b the blue value.  Must be between [0,1].
 	 */
 	public void setHSB(float h, float s, float b) {
-		if(Float.isInfinite(h) || Float.isNaN(h))
-			throw new IllegalArgumentException("The hue value ("+h+") is not a valid number.");
-		//hue is cyclic, so it can be any value:
-		while(h<0) h++;
-		while(h>1) h--;
-
-		if(s<0 || s>1)
-			throw new IllegalArgumentException("The saturation value ("+s+") must be between [0,1]");
-		if(b<0 || b>1)
-			throw new IllegalArgumentException("The brightness value ("+b+") must be between [0,1]");
-
-		Color lastColor = getColor();
-
-		boolean updateHSBSpinners = adjustingSpinners==0;
-		adjustingSpinners++;
-		adjustingColorPanel++;
-		try {
-			if(updateHSBSpinners) {
-				hue.setValue( (int)(h*360f+.49f));
-				sat.setValue( (int)(s*100f+.49f));
-				bri.setValue( (int)(b*100f+.49f));
-			}
-
-			Color c = new Color(Color.HSBtoRGB(h, s, b));
-			int alpha = this.alpha.getIntValue();
-			c = new Color(c.getRed(), c.getGreen(), c.getBlue(), alpha);
-			preview.setForeground(c);
-			currentRed = c.getRed();
-			currentGreen = c.getGreen();
-			currentBlue = c.getBlue();
-			red.setValue(currentRed);
-			green.setValue(currentGreen);
-			blue.setValue(currentBlue);
-			colorPanel.setHSB(h, s, b);
-			updateHexField();
-			updateSlider();
-			slider.repaint();
-		} finally {
-			adjustingSpinners--;
-			adjustingColorPanel--;
-		}
-		Color newColor = getColor();
-		if(lastColor.equals(newColor)==false)
-			firePropertyChange(SELECTED_COLOR_PROPERTY,lastColor,newColor);
+		model.setHSB(h, s, b);
 	}
 
 	private void updateHexField() {
-		adjustingHexField++;
-		try {
-			int r = red.getIntValue();
-			int g = green.getIntValue();
-			int b = blue.getIntValue();
-
-			int i = (r << 16) + (g << 8) +b;
-			String s = Integer.toHexString(i).toUpperCase();
-			while(s.length()<6)
-				s = "0"+s;
-			if(hexField.getText().equalsIgnoreCase(s)==false)
-				hexField.setText(s);
-		} finally {
-			adjustingHexField--;
+		int i = (model.getRed() << 16) + (model.getGreen() << 8) + model.getBlue();
+		HexColors.format(i, false, hexChars, 0);
+		String text = hexField.getText();
+		if(!matchesIgnoreCase(text, hexChars))
+			hexField.setText(new String(hexChars));
+	}
+
+	/** Used by <code>updateHexField()</code> to format the selected color. */
+	private final char[] hexChars = new char[6];
+
+	private static boolean matchesIgnoreCase(String s,char[] c) {
+		if(s.length()!=c.length)
+			return false;
+		for(int a = 0; a<c.length; a++) {
+			if(Character.toUpperCase(s.charAt(a))!=c[a])
+				return false;
 		}
+		return true;
 	}
 
 	class Option {
@@ -983,7 +1211,7 @@ public class ColorPicker extends JPanel {
 			if(slider!=null) {
 				slider.setValue(i);
 			}
-			if(spinner!=null) {
+			if(spinner!=null && getIntValue()!=i) {
 				spinner.setValue(new Integer(i));
 			}
 		}
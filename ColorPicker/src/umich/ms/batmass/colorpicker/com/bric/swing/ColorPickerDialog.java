@@ -26,28 +26,95 @@ import java.awt.Frame;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import javax.swing.JComponent;
 import javax.swing.JDialog;
+import javax.swing.JRootPane;
+import javax.swing.RootPaneContainer;
 
 import umich.ms.batmass.colorpicker.com.bric.swing.DialogFooter.EscapeKeyBehavior;
 
 /** This wraps a <code>ColorPicker</code> in a simple dialog with "OK" and "Cancel" options.
  * <P>(This object is used by the static calls in <code>ColorPicker</code> to show a dialog.)
+ * <P>Building a dialog is expensive, so one dialog is kept for each owner window
+ * and reused every time a color is requested (see <code>getDialog()</code>).
  *
  */
 class ColorPickerDialog extends JDialog {
     
 	private static final long serialVersionUID = 2L;
 	
+	/** The client property of an owner's <code>JRootPane</code> that stores its reusable dialog.
+	 * Storing the dialog there means it is discarded along with its owner.
+	 */
+	private static final String DIALOG_KEY = ColorPickerDialog.class.getName()+".dialog";
+	
+	/** The reusable dialog for a <code>null</code> owner. */
+	private static ColorPickerDialog sharedDialog;
+	
+	/** Returns a dialog for the owner provided, reset to show the color provided.
+	 * <P>If possible this returns the same dialog every time it is called for
+	 * the same owner.  A new dialog is created if the owner's dialog is already
+	 * showing, or if the owner doesn't have a <code>JRootPane</code> to store it in.
+	 * <P>This must be called on the event dispatch thread.
+	 * 
+	 * @param owner the dialog's owner.  This must be a Frame, a Dialog or <code>null</code>.
+	 * @param color the initial color.
+	 * @param includeOpacity whether to show the opacity controls.
+	 * @return a dialog that is ready to be shown.
+	 */
+	static ColorPickerDialog getDialog(Window owner,Color color,boolean includeOpacity) {
+		ColorPickerDialog d = getCachedDialog(owner);
+		if(d==null || d.isVisible()) {
+			d = createDialog(owner, color, includeOpacity);
+			if(getCachedDialog(owner)==null)
+				putCachedDialog(owner, d);
+		} else {
+			d.reset(color, includeOpacity);
+		}
+		return d;
+	}
+	
+	private static ColorPickerDialog createDialog(Window owner,Color color,boolean includeOpacity) {
+		if(owner instanceof Frame || owner==null) {
+			return new ColorPickerDialog( (Frame)owner, color, includeOpacity);
+		} else if(owner instanceof Dialog){
+			return new ColorPickerDialog( (Dialog)owner, color, includeOpacity);
+		}
+		throw new IllegalArgumentException("the owner ("+owner.getClass().getName()+") must be a java.awt.Frame or a java.awt.Dialog");
+	}
+	
+	private static ColorPickerDialog getCachedDialog(Window owner) {
+		if(owner==null)
+			return sharedDialog;
+		if(owner instanceof RootPaneContainer) {
+			JRootPane rootPane = ((RootPaneContainer)owner).getRootPane();
+			if(rootPane!=null)
+				return (ColorPickerDialog)rootPane.getClientProperty(DIALOG_KEY);
+		}
+		return null;
+	}
+	
+	private static void putCachedDialog(Window owner,ColorPickerDialog d) {
+		if(owner==null) {
+			sharedDialog = d;
+		} else if(owner instanceof RootPaneContainer) {
+			JRootPane rootPane = ((RootPaneContainer)owner).getRootPane();
+			if(rootPane!=null)
+				rootPane.putClientProperty(DIALOG_KEY, d);
+		}
+	}
+	
 	ColorPicker cp;
 	int alpha;
 	Color returnValue = null;
 	ActionListener okListener = new ActionListener() {
 		public void actionPerformed(ActionEvent e) {
 			returnValue = cp.getColor();
+			ColorStore.getDefault().addRecent(returnValue.getRGB());
 		}
 	};
 	DialogFooter footer;
@@ -64,6 +131,7 @@ class ColorPickerDialog extends JDialog {
 	
 	private void initialize(Component owner,Color color,boolean includeOpacity) {
 		cp = new ColorPicker(true,includeOpacity);
+		cp.setColorStore(ColorStore.getDefault());
 		setModal(true);
 		setResizable(false);
 		getContentPane().setLayout(new GridBagLayout());
@@ -87,6 +155,20 @@ class ColorPickerDialog extends JDialog {
 		footer.getButton(DialogFooter.OK_OPTION).addActionListener(okListener);
 	}
 	
+	/** Prepares this dialog to be shown again.
+	 * 
+	 * @param color the initial color.
+	 * @param includeOpacity whether to show the opacity controls.
+	 */
+	void reset(Color color,boolean includeOpacity) {
+		returnValue = null;
+		cp.setOpacityVisible(includeOpacity);
+		cp.setColor(color);
+		alpha = color.getAlpha();
+		pack();
+		setLocationRelativeTo(getOwner());
+	}
+	
 	/** @return the color committed when the user clicked 'OK'.  Note this returns <code>null</code>
 	 * if the user canceled this dialog, or exited via the close decoration.
 	 */
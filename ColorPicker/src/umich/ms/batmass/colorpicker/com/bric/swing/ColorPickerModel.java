@@ -0,0 +1,298 @@
+/*
+ * @(#)ColorPickerModel.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.swing;
+
+import java.awt.Color;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/** The selected color of a <code>ColorPicker</code>, stored in both
+ * HSB and RGB coordinates, and its opacity.
+ * <P>All the controls of a <code>ColorPicker</code> (the spinners, the slider,
+ * the hex field, the preview swatch and the <code>ColorPickerPanel</code>) write
+ * to this model, and are updated together when it changes.
+ * <P>Several changes can be grouped into one transaction:
+ * <BR><code>model.beginUpdate();</code>
+ * <BR><code>try {</code>
+ * <BR><code>&nbsp;&nbsp;model.setRGB(r, g, b);</code>
+ * <BR><code>&nbsp;&nbsp;model.setOpacity(a);</code>
+ * <BR><code>} finally {</code>
+ * <BR><code>&nbsp;&nbsp;model.endUpdate();</code>
+ * <BR><code>}</code>
+ * <P>Listeners are notified at most once per transaction, and only if something
+ * actually changed.  A call to a setter outside of a transaction is a
+ * transaction by itself.
+ * <P>Like other Swing models this should only be used on the event dispatch thread.
+ */
+public class ColorPickerModel {
+
+	/* Floats from [0,1].  They are stored separately from the RGB values,
+	 * because converting HSB(.5,0,0) to RGB and back again would shift
+	 * the hue back to zero.
+	 */
+	private float hue = 0, sat = 0, bri = 0;
+	private int red = 0, green = 0, blue = 0;
+	private int alpha = 255;
+
+	/** The number of nested <code>beginUpdate()</code> calls. */
+	private int updateDepth = 0;
+	/** Whether something changed in the current transaction. */
+	private boolean changed = false;
+
+	/** The listeners to notify.  This array is replaced (never modified) when
+	 * listeners are added or removed, so it can be iterated while listeners remove themselves.
+	 */
+	private ChangeListener[] changeListeners = new ChangeListener[0];
+	/** The event passed to every listener.  It is immutable, so it is safe to reuse. */
+	private final ChangeEvent changeEvent = new ChangeEvent(this);
+	/** A recycled array used to convert RGB values to HSB values. */
+	private final float[] scratchHSB = new float[3];
+
+	/** Creates a model for opaque black. */
+	public ColorPickerModel() {
+	}
+
+	/** Adds a listener that is notified once per transaction that changes this model. */
+	public void addChangeListener(ChangeListener l) {
+		ChangeListener[] oldListeners = changeListeners;
+		for(int a = 0; a<oldListeners.length; a++) {
+			if(oldListeners[a]==l)
+				return;
+		}
+		ChangeListener[] newListeners = new ChangeListener[oldListeners.length+1];
+		System.arraycopy(oldListeners, 0, newListeners, 0, oldListeners.length);
+		newListeners[oldListeners.length] = l;
+		changeListeners = newListeners;
+	}
+
+	/** Removes a listener so it is no longer notified when this model changes. */
+	public void removeChangeListener(ChangeListener l) {
+		ChangeListener[] oldListeners = changeListeners;
+		for(int a = 0; a<oldListeners.length; a++) {
+			if(oldListeners[a]==l) {
+				ChangeListener[] newListeners = new ChangeListener[oldListeners.length-1];
+				System.arraycopy(oldListeners, 0, newListeners, 0, a);
+				System.arraycopy(oldListeners, a+1, newListeners, a, oldListeners.length-a-1);
+				changeListeners = newListeners;
+				return;
+			}
+		}
+	}
+
+	/** Starts a transaction.  Listeners will not be notified until
+	 * the matching call to <code>endUpdate()</code>.
+	 * <P>Transactions can be nested: listeners are notified when the
+	 * outermost transaction ends.
+	 */
+	public void beginUpdate() {
+		updateDepth++;
+	}
+
+	/** Ends a transaction started with <code>beginUpdate()</code>.
+	 * If this ends the outermost transaction and anything changed,
+	 * then listeners are notified.
+	 */
+	public void endUpdate() {
+		if(updateDepth==0)
+			throw new IllegalStateException("endUpdate() was called without a matching beginUpdate()");
+		updateDepth--;
+		if(updateDepth==0 && changed) {
+			changed = false;
+			fireChangeListeners();
+		}
+	}
+
+	/** @return whether a transaction is currently in progress. */
+	public boolean isUpdating() {
+		return updateDepth>0;
+	}
+
+	private void markChanged() {
+		changed = true;
+		if(updateDepth==0) {
+			changed = false;
+			fireChangeListeners();
+		}
+	}
+
+	protected void fireChangeListeners() {
+		ChangeListener[] listeners = changeListeners;
+		for(int a = 0; a<listeners.length; a++) {
+			try {
+				listeners[a].stateChanged(changeEvent);
+			} catch(RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/** Sets the selected color.  The HSB values are derived from these values.
+	 *
+	 * @param r the red value.  Must be between [0,255].
+	 * @param g the green value.  Must be between [0,255].
+	 * @param b the blue value.  Must be between [0,255].
+	 */
+	public void setRGB(int r,int g,int b) {
+		if(r<0 || r>255)
+			throw new IllegalArgumentException("The red value ("+r+") must be between [0,255].");
+		if(g<0 || g>255)
+			throw new IllegalArgumentException("The green value ("+g+") must be between [0,255].");
+		if(b<0 || b>255)
+			throw new IllegalArgumentException("The blue value ("+b+") must be between [0,255].");
+
+		if(red==r && green==g && blue==b)
+			return;
+
+		red = r;
+		green = g;
+		blue = b;
+		float[] hsb = Color.RGBtoHSB(r, g, b, scratchHSB);
+		hue = hsb[0];
+		sat = hsb[1];
+		bri = hsb[2];
+		markChanged();
+	}
+
+	/** Sets the selected color.  The RGB values are derived from these values.
+	 *
+	 * @param h the hue value.  Hue is cyclic, so this can be any value.
+	 * @param s the saturation value.  Must be between [0,1].
+	 * @param b the brightness value.  Must be between [0,1].
+	 */
+	public void setHSB(float h,float s,float b) {
+		if(Float.isInfinite(h) || Float.isNaN(h))
+			throw new IllegalArgumentException("The hue value ("+h+") is not a valid number.");
+		//hue is cyclic, so it can be any value:
+		while(h<0) h++;
+		while(h>1) h--;
+
+		if(s<0 || s>1)
+			throw new IllegalArgumentException("The saturation value ("+s+") must be between [0,1]");
+		if(b<0 || b>1)
+			throw new IllegalArgumentException("The brightness value ("+b+") must be between [0,1]");
+
+		if(hue==h && sat==s && bri==b)
+			return;
+
+		hue = h;
+		sat = s;
+		bri = b;
+		int rgb = Color.HSBtoRGB(h, s, b);
+		red = (rgb >> 16) & 0xff;
+		green = (rgb >> 8) & 0xff;
+		blue = rgb & 0xff;
+		markChanged();
+	}
+
+	/** Sets the opacity.
+	 *
+	 * @param v an int between 0 and 255.
+	 */
+	public void setOpacity(int v) {
+		if(v<0 || v>255)
+			throw new IllegalArgumentException("The opacity ("+v+") must be between 0 and 255.");
+		if(alpha==v)
+			return;
+		alpha = v;
+		markChanged();
+	}
+
+	/** Sets the RGB values and the opacity in one transaction. */
+	public void setColor(Color c) {
+		beginUpdate();
+		try {
+			setRGB(c.getRed(), c.getGreen(), c.getBlue());
+			setOpacity(c.getAlpha());
+		} finally {
+			endUpdate();
+		}
+	}
+
+	/** @return the hue, between [0,1]. */
+	public float getHue() {
+		return hue;
+	}
+
+	/** @return the saturation, between [0,1]. */
+	public float getSaturation() {
+		return sat;
+	}
+
+	/** @return the brightness, between [0,1]. */
+	public float getBrightness() {
+		return bri;
+	}
+
+	/** @return the red value, between [0,255]. */
+	public int getRed() {
+		return red;
+	}
+
+	/** @return the green value, between [0,255]. */
+	public int getGreen() {
+		return green;
+	}
+
+	/** @return the blue value, between [0,255]. */
+	public int getBlue() {
+		return blue;
+	}
+
+	/** @return the opacity, between [0,255]. */
+	public int getOpacity() {
+		return alpha;
+	}
+
+	/** @return the HSB values of the selected color.  Each value is between [0,1]. */
+	public float[] getHSB() {
+		return getHSB(new float[3]);
+	}
+
+	/** Stores the HSB values of the selected color in an existing array.
+	 * Each value is between [0,1].
+	 *
+	 * @param dest an array of at least 3 elements.
+	 * @return <code>dest</code>.
+	 */
+	public float[] getHSB(float[] dest) {
+		dest[0] = hue;
+		dest[1] = sat;
+		dest[2] = bri;
+		return dest;
+	}
+
+	/** @return the RGB values of the selected color.  Each value is between [0,255]. */
+	public int[] getRGB() {
+		return getRGB(new int[3]);
+	}
+
+	/** Stores the RGB values of the selected color in an existing array.
+	 * Each value is between [0,255].
+	 *
+	 * @param dest an array of at least 3 elements.
+	 * @return <code>dest</code>.
+	 */
+	public int[] getRGB(int[] dest) {
+		dest[0] = red;
+		dest[1] = green;
+		dest[2] = blue;
+		return dest;
+	}
+
+	/** @return the selected color, including its opacity, packed in an int as 0xAARRGGBB.
+	 * This is the same value <code>getColor().getRGB()</code> returns.
+	 */
+	public int getARGB() {
+		return (alpha << 24) | (red << 16) | (green << 8) | blue;
+	}
+
+	/** @return the selected color, including its opacity. */
+	public Color getColor() {
+		return new Color(red, green, blue, alpha);
+	}
+}
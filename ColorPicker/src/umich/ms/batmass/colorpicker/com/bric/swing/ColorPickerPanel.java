@@ -25,11 +25,14 @@ import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Shape;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
@@ -41,14 +44,15 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Ellipse2D;
 import java.awt.image.BufferedImage;
-import java.util.Vector;
 
 import javax.swing.JPanel;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.MouseInputAdapter;
 import javax.swing.event.MouseInputListener;
 
+import umich.ms.batmass.colorpicker.com.bric.plaf.DragCoalescer;
 import umich.ms.batmass.colorpicker.com.bric.plaf.PlafPaintUtils;
 
 /** This is the large graphic element in the <code>ColorPicker</code>
@@ -80,19 +84,33 @@ public class ColorPickerPanel extends JPanel {
 	/** The maximum size the graphic will be.  No matter
 	 *  how big the panel becomes, the graphic will not exceed
 	 *  this length.
-	 *  <P>(This is enforced because only 1 BufferedImage is used
-	 *  to render the graphic.  This image is created once at a fixed
-	 *  size and is never replaced.)
+	 *  <P>This is measured in logical pixels: on a HiDPI display
+	 *  the graphic is rendered with more device pixels (see <code>MAX_SCALE</code>).
 	 */
 	public static final int MAX_SIZE = 325;
 	
+	/** The largest device scale the graphic is rendered at.  This bounds
+	 * the memory the image uses if this panel is painted with a large transform.
+	 */
+	static final double MAX_SCALE = 4;
+	
 	/** This controls how the colors are displayed. */
 	private int mode = ColorPicker.BRI;
 	
 	/** The point used to indicate the selected color. */
 	private Point point = new Point(0,0);
 	
-	private Vector<ChangeListener> changeListeners = new Vector<ChangeListener>();
+	/** The listeners to notify.  This array is replaced (never modified) when
+	 * listeners are added or removed, so it can be iterated without locking.
+	 */
+	private volatile ChangeListener[] changeListeners = new ChangeListener[0];
+	
+	/** The event passed to every listener.  It is immutable, so it is safe to reuse. */
+	private final ChangeEvent changeEvent = new ChangeEvent(this);
+	
+	/* Recycled arrays used to translate mouse coordinates into colors. */
+	private final float[] scratchHSB = new float[3];
+	private final int[] scratchRGB = new int[3];
 	
 	/* Floats from [0,1].  They must be kept distinct, because
 	 * when you convert them to RGB coordinates HSB(0,0,0) and HSB (.5,0,0)
@@ -101,24 +119,32 @@ public class ColorPickerPanel extends JPanel {
 	float hue = -1, sat = -1, bri = -1;
 	int red = -1, green = -1, blue = -1;
 	
+	/** Applies drags at most once per frame.  Every drag changes the selected color
+	 * (and may regenerate the graphic and notify listeners), so this saves a lot of work
+	 * with high-rate mice.
+	 */
+	DragCoalescer dragCoalescer = new DragCoalescer(new DragCoalescer.Target() {
+		@Override
+		public void dragTo(int x, int y) {
+			selectColorAt(x, y);
+		}
+	});
+	
 	MouseInputListener mouseListener = new MouseInputAdapter() {
 		@Override
 		public void mousePressed(MouseEvent e) {
 			requestFocus();
-			Point p = e.getPoint();
-			if(mode==ColorPicker.BRI || mode==ColorPicker.SAT ||
-					mode==ColorPicker.HUE) {
-				float[] hsb = getHSB(p);
-				setHSB(hsb[0], hsb[1], hsb[2]);
-			} else {
-				int[] rgb = getRGB(p);
-				setRGB(rgb[0], rgb[1], rgb[2]);
-			}
+			selectColorAt(e.getX(), e.getY());
 		}
 
 		@Override
 		public void mouseDragged(MouseEvent e) {
-			mousePressed(e);
+			dragCoalescer.dragged(e);
+		}
+
+		@Override
+		public void mouseReleased(MouseEvent e) {
+			dragCoalescer.released(e);
 		}
 	};
 	
@@ -143,17 +169,13 @@ public class ColorPickerPanel extends JPanel {
 				multiplier = 5;
 			}
 			if(dx!=0 || dy!=0) {
-				int size = Math.min(MAX_SIZE, Math.min(getWidth()-imagePadding.left-imagePadding.right,getHeight()-imagePadding.top-imagePadding.bottom));
+				int size = getImageSize();
 				
 				int offsetX = getWidth()/2-size/2;
 				int offsetY = getHeight()/2-size/2;
-				mouseListener.mousePressed(new MouseEvent(ColorPickerPanel.this,
-						MouseEvent.MOUSE_PRESSED,
-						System.currentTimeMillis(), 0,
-						point.x+multiplier*dx+offsetX,
-						point.y+multiplier*dy+offsetY,
-						1, false
-						));
+				requestFocus();
+				selectColorAt(point.x+multiplier*dx+offsetX,
+						point.y+multiplier*dy+offsetY);
 			}
 		}
 	};
@@ -167,17 +189,75 @@ public class ColorPickerPanel extends JPanel {
 		}
 	};
 	
+	/** The delay (in ms) after the last resize event before the
+	 * graphic is re-rendered at full resolution.
+	 */
+	static final int RESIZE_REFINE_DELAY = 150;
+	
+	/** Renders the full resolution graphic once a burst of resize events
+	 * has ended.
+	 */
+	Timer refineTimer = new Timer(RESIZE_REFINE_DELAY, new ActionListener() {
+		public void actionPerformed(ActionEvent e) {
+			if(imageSize!=getImageSize())
+				regenerateImage();
+		}
+	});
+	
+	/** The first resize event is rendered normally, but if more
+	 * events follow (because the user is dragging the edge of a window)
+	 * we only render a quarter of the pixels (half the width and half the height)
+	 * and upscale them when painting.  When the resizing stops
+	 * the <code>refineTimer</code> renders the full graphic.
+	 */
 	ComponentListener componentListener = new ComponentAdapter() {
 
 		@Override
 		public void componentResized(ComponentEvent e) {
 			regeneratePoint();
-			regenerateImage();
+			if(refineTimer.isRunning()) {
+				regenerateImage(Math.max(1, getImageSize()/2));
+			} else {
+				regenerateImage(getImageSize());
+			}
+			refineTimer.restart();
 		}
 		
 	};
 	
-	BufferedImage image = new BufferedImage(MAX_SIZE, MAX_SIZE, BufferedImage.TYPE_INT_ARGB);
+	/** The rendered graphic.  This is allocated at the number of device pixels
+	 * the graphic needs, and is reused until that changes a lot (see <code>getImage()</code>).
+	 * So a small picker uses a small image, and a HiDPI display gets a sharp one.
+	 */
+	BufferedImage image;
+	
+	/** The length of the graphic currently rendered in <code>image</code>, in logical pixels.
+	 * This is less than the painted size while a low resolution
+	 * preview is showing.
+	 */
+	private int imageSize = 0;
+	
+	/** The length of the graphic currently rendered in <code>image</code>, in device pixels. */
+	private int imagePixelSize = 0;
+	
+	/** The ratio of device pixels to logical pixels this panel was last painted with. */
+	private double deviceScale = 1;
+	
+	/** Selects the color at the indicated point.
+	 * 
+	 * @param x the x-coordinate relative to this panel.
+	 * @param y the y-coordinate relative to this panel.
+	 */
+	private void selectColorAt(int x,int y) {
+		if(mode==ColorPicker.BRI || mode==ColorPicker.SAT ||
+				mode==ColorPicker.HUE) {
+			getHSB(x, y, scratchHSB);
+			setHSB(scratchHSB[0], scratchHSB[1], scratchHSB[2]);
+		} else {
+			getRGB(x, y, scratchRGB);
+			setRGB(scratchRGB[0], scratchRGB[1], scratchRGB[2]);
+		}
+	}
 	
 	/** Creates a new <code>ColorPickerPanel</code> */
 	public ColorPickerPanel() {
@@ -195,31 +275,47 @@ public class ColorPickerPanel extends JPanel {
 
 		setCursor(Cursor.getPredefinedCursor(Cursor.CROSSHAIR_CURSOR));
 		addComponentListener(componentListener);
+		refineTimer.setRepeats(false);
 	}
 	
 	/** This listener will be notified when the current HSB or RGB values
 	 * change.
 	 */
-	public void addChangeListener(ChangeListener l) {
-		if(changeListeners.contains(l))
-			return;
-		changeListeners.add(l);
+	public synchronized void addChangeListener(ChangeListener l) {
+		ChangeListener[] oldListeners = changeListeners;
+		for(int a = 0; a<oldListeners.length; a++) {
+			if(oldListeners[a]==l)
+				return;
+		}
+		ChangeListener[] newListeners = new ChangeListener[oldListeners.length+1];
+		System.arraycopy(oldListeners, 0, newListeners, 0, oldListeners.length);
+		newListeners[oldListeners.length] = l;
+		changeListeners = newListeners;
 	}
 	
 	/** Remove a <code>ChangeListener</code> so it is no longer
 	 * notified when the selected color changes.
 	 */
-	public void removeChangeListener(ChangeListener l) {
-		changeListeners.remove(l);
+	public synchronized void removeChangeListener(ChangeListener l) {
+		ChangeListener[] oldListeners = changeListeners;
+		for(int a = 0; a<oldListeners.length; a++) {
+			if(oldListeners[a]==l) {
+				ChangeListener[] newListeners = new ChangeListener[oldListeners.length-1];
+				System.arraycopy(oldListeners, 0, newListeners, 0, a);
+				System.arraycopy(oldListeners, a+1, newListeners, a, oldListeners.length-a-1);
+				changeListeners = newListeners;
+				return;
+			}
+		}
 	}
 	
 	protected void fireChangeListeners() {
-		if(changeListeners==null)
+		ChangeListener[] listeners = changeListeners;
+		if(listeners==null)
 			return;
-		for(int a = 0; a<changeListeners.size(); a++) {
-			ChangeListener l = changeListeners.get(a);
+		for(int a = 0; a<listeners.length; a++) {
 			try {
-				l.stateChanged(new ChangeEvent(this));
+				listeners[a].stateChanged(changeEvent);
 			} catch(RuntimeException e) {
 				e.printStackTrace();
 			}
@@ -233,7 +329,18 @@ public class ColorPickerPanel extends JPanel {
 		super.paint(g);
 
 		Graphics2D g2 = (Graphics2D)g;
-		int size = Math.min(MAX_SIZE, Math.min(getWidth()-imagePadding.left-imagePadding.right,getHeight()-imagePadding.top-imagePadding.bottom));
+		int size = getImageSize();
+		
+		/* The transform tells us how many device pixels one logical
+		 * pixel covers.  If that changed (because this window moved to another
+		 * screen, for example) then render the graphic again to match.
+		 */
+		double scale = Math.min(MAX_SCALE, Math.max(1, Math.abs(g2.getTransform().getScaleX())));
+		if(Math.abs(scale-deviceScale)>.001) {
+			deviceScale = scale;
+			if(imageSize==size)
+				regenerateImage(size);
+		}
 		
 		g2.translate(getWidth()/2-size/2, getHeight()/2-size/2);
 		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -263,7 +370,12 @@ public class ColorPickerPanel extends JPanel {
 			g2.translate(-2,-2);
 		}
 		
-		g2.drawImage(image, 0, 0, size, size, 0, 0, size, size, null);
+		if(imagePixelSize!=Math.round(size*scale)) {
+			//a low resolution preview is showing, so smooth it out as we scale it up
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		}
+		if(image!=null)
+			g2.drawImage(image, 0, 0, size, size, 0, 0, imagePixelSize, imagePixelSize, null);
 		
 		g2.setStroke(new BasicStroke(1));
 		if(shape instanceof Rectangle) {
@@ -342,8 +454,7 @@ public class ColorPickerPanel extends JPanel {
 					}
 				}
 			} else {
-				float[] hsb = new float[3];
-				Color.RGBtoHSB(r, g, b, hsb);
+				float[] hsb = Color.RGBtoHSB(r, g, b, scratchHSB);
 				setHSB(hsb[0],hsb[1],hsb[2]);
 				return;
 			}
@@ -357,14 +468,47 @@ public class ColorPickerPanel extends JPanel {
 	 * Each value is between [0,1].
 	 */
 	public float[] getHSB() {
-		return new float[] {hue, sat, bri};
+		return getHSB(new float[3]);
+	}
+	
+	/** Stores the HSB values of the selected color in an existing array.
+	 * Each value is between [0,1].
+	 * 
+	 * @param dest an array of at least 3 elements.
+	 * @return <code>dest</code>.
+	 */
+	public float[] getHSB(float[] dest) {
+		dest[0] = hue;
+		dest[1] = sat;
+		dest[2] = bri;
+		return dest;
 	}
 	
 	/** @return the RGB values of the selected color.
 	 * Each value is between [0,255].
 	 */
 	public int[] getRGB() {
-		return new int[] {red, green, blue};
+		return getRGB(new int[3]);
+	}
+	
+	/** Stores the RGB values of the selected color in an existing array.
+	 * Each value is between [0,255].
+	 * 
+	 * @param dest an array of at least 3 elements.
+	 * @return <code>dest</code>.
+	 */
+	public int[] getRGB(int[] dest) {
+		dest[0] = red;
+		dest[1] = green;
+		dest[2] = blue;
+		return dest;
+	}
+	
+	/** @return the selected color packed in an int as 0xAARRGGBB.
+	 * The alpha component is always 255.
+	 */
+	public int getARGB() {
+		return 0xff000000 | (red << 16) | (green << 8) | blue;
 	}
 	
 	/** Returns the color at the indicated point in HSB values.
@@ -373,46 +517,57 @@ public class ColorPickerPanel extends JPanel {
 	 * @return the HSB values at the point provided.
 	 */
 	public float[] getHSB(Point p) {
+		return getHSB(p.x, p.y, new float[3]);
+	}
+
+	/** Stores the color at the indicated point in an existing array as HSB values.
+	 * 
+	 * @param x the x-coordinate relative to this panel.
+	 * @param y the y-coordinate relative to this panel.
+	 * @param dest an array of at least 3 elements.
+	 * @return <code>dest</code>.
+	 */
+	public float[] getHSB(int x,int y,float[] dest) {
 		if(mode==ColorPicker.RED || mode==ColorPicker.GREEN ||
 				mode==ColorPicker.BLUE) {
-			int[] rgb = getRGB(p);
-			float[] hsb = Color.RGBtoHSB(rgb[0], rgb[1], rgb[2], null);
-			return hsb;
+			int[] rgb = getRGB(x, y, new int[3]);
+			return Color.RGBtoHSB(rgb[0], rgb[1], rgb[2], dest);
 		}
 		
-		int size = Math.min(MAX_SIZE, Math.min(getWidth()-imagePadding.left-imagePadding.right,getHeight()-imagePadding.top-imagePadding.bottom));
-		p.translate(-(getWidth()/2-size/2), -(getHeight()/2-size/2));
+		int size = getImageSize();
+		x -= getWidth()/2-size/2;
+		y -= getHeight()/2-size/2;
 		if(mode==ColorPicker.BRI || mode==ColorPicker.SAT) {
 			//the two circular views:
 			double radius = (size)/2.0;
-			double x = p.getX()-size/2.0;
-			double y = p.getY()-size/2.0;
-			double r = Math.sqrt(x*x+y*y)/radius;
-			double theta = Math.atan2(y,x)/(Math.PI*2.0);
+			double x2 = x-size/2.0;
+			double y2 = y-size/2.0;
+			double r = Math.sqrt(x2*x2+y2*y2)/radius;
+			double theta = Math.atan2(y2,x2)/(Math.PI*2.0);
 			
 			if(r>1) r = 1;
 			
 			if(mode==ColorPicker.BRI) {
-				return new float[] { 
-						(float)(theta+.25f),
-						(float)(r),
-						bri};
+				dest[0] = (float)(theta+.25f);
+				dest[1] = (float)(r);
+				dest[2] = bri;
 			} else {
-				return new float[] {
-						(float)(theta+.25f),
-						sat,
-						(float)(r)
-				};
+				dest[0] = (float)(theta+.25f);
+				dest[1] = sat;
+				dest[2] = (float)(r);
 			}
 		} else {
-			float s = ((float)p.x)/((float)size);
-			float b = ((float)p.y)/((float)size);
+			float s = ((float)x)/((float)size);
+			float b = ((float)y)/((float)size);
 			if(s<0) s = 0;
 			if(s>1) s = 1;
 			if(b<0) b = 0;
 			if(b>1) b = 1;
-			return new float[] {hue, s, b};
+			dest[0] = hue;
+			dest[1] = s;
+			dest[2] = b;
 		}
+		return dest;
 	}
 
 	/** Returns the color at the indicated point in RGB values.
@@ -421,33 +576,52 @@ public class ColorPickerPanel extends JPanel {
 	 * @return the RGB values at the point provided.
 	 */
 	public int[] getRGB(Point p) {
+		return getRGB(p.x, p.y, new int[3]);
+	}
+
+	/** Stores the color at the indicated point in an existing array as RGB values.
+	 * 
+	 * @param x the x-coordinate relative to this panel.
+	 * @param y the y-coordinate relative to this panel.
+	 * @param dest an array of at least 3 elements.
+	 * @return <code>dest</code>.
+	 */
+	public int[] getRGB(int x,int y,int[] dest) {
 		if(mode==ColorPicker.BRI || mode==ColorPicker.SAT ||
 				mode==ColorPicker.HUE) {
-			float[] hsb = getHSB(p);
+			float[] hsb = getHSB(x, y, new float[3]);
 			int rgb = Color.HSBtoRGB(hsb[0], hsb[1], hsb[2]);
-			int r = (rgb & 0xff0000) >> 16;
-			int g = (rgb & 0xff00) >> 8;
-			int b = (rgb & 0xff);
-			return new int[] {r, g, b};
+			dest[0] = (rgb & 0xff0000) >> 16;
+			dest[1] = (rgb & 0xff00) >> 8;
+			dest[2] = (rgb & 0xff);
+			return dest;
 		}
 		
-		int size = Math.min(MAX_SIZE, Math.min(getWidth()-imagePadding.left-imagePadding.right,getHeight()-imagePadding.top-imagePadding.bottom));
-		p.translate(-(getWidth()/2-size/2), -(getHeight()/2-size/2));
+		int size = getImageSize();
+		x -= getWidth()/2-size/2;
+		y -= getHeight()/2-size/2;
 		
-		int x2 = p.x*255/size;
-		int y2 = p.y*255/size;
+		int x2 = x*255/size;
+		int y2 = y*255/size;
 		if(x2<0) x2 = 0;
 		if(x2>255) x2 = 255;
 		if(y2<0) y2 = 0;
 		if(y2>255) y2 = 255;
 			
 		if(mode==ColorPicker.RED) {
-			return new int[] {red, x2, y2};
+			dest[0] = red;
+			dest[1] = x2;
+			dest[2] = y2;
 		} else if(mode==ColorPicker.GREEN) {
-			return new int[] {x2, green, y2};
+			dest[0] = x2;
+			dest[1] = green;
+			dest[2] = y2;
 		} else {
-			return new int[] {x2, y2, blue};
+			dest[0] = x2;
+			dest[1] = y2;
+			dest[2] = blue;
 		}
+		return dest;
 	}
 
 	/** Sets the selected color of this panel.
@@ -493,17 +667,15 @@ public class ColorPickerPanel extends JPanel {
 					}
 				}
 			} else {
-
-				Color c = new Color(Color.HSBtoRGB(h, s, b));
-				setRGB(c.getRed(), c.getGreen(), c.getBlue());
+				int rgb = Color.HSBtoRGB(h, s, b);
+				setRGB((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
 				return;
 			}
 			
-
-			Color c = new Color(Color.HSBtoRGB(hue, sat, bri));
-			red = c.getRed();
-			green = c.getGreen();
-			blue = c.getBlue();
+			int rgb = Color.HSBtoRGB(hue, sat, bri);
+			red = (rgb >> 16) & 0xff;
+			green = (rgb >> 8) & 0xff;
+			blue = rgb & 0xff;
 			
 			regeneratePoint();
 			repaint();
@@ -513,108 +685,116 @@ public class ColorPickerPanel extends JPanel {
 	
 	/** Recalculates the (x,y) point used to indicate the selected color. */
 	private void regeneratePoint() {
-		int size = Math.min(MAX_SIZE, Math.min(getWidth()-imagePadding.left-imagePadding.right,getHeight()-imagePadding.top-imagePadding.bottom));
+		int size = getImageSize();
 		if(mode==ColorPicker.HUE || mode==ColorPicker.SAT || mode==ColorPicker.BRI) {
 			if(mode==ColorPicker.HUE) {
-				point = new Point((int)(sat*size+.5),(int)(bri*size+.5));
+				point.setLocation((int)(sat*size+.5),(int)(bri*size+.5));
 			} else if(mode==ColorPicker.SAT) {
 				double theta = hue*2*Math.PI-Math.PI/2;
 				if(theta<0) theta+=2*Math.PI;
 				
 				double r = bri*size/2;
-				point = new Point((int)(r*Math.cos(theta)+.5+size/2.0),(int)(r*Math.sin(theta)+.5+size/2.0));
+				point.setLocation((int)(r*Math.cos(theta)+.5+size/2.0),(int)(r*Math.sin(theta)+.5+size/2.0));
 			} else if(mode==ColorPicker.BRI) {
 				double theta = hue*2*Math.PI-Math.PI/2;
 				if(theta<0) theta+=2*Math.PI;
 				double r = sat*size/2;
-				point = new Point((int)(r*Math.cos(theta)+.5+size/2.0),(int)(r*Math.sin(theta)+.5+size/2.0));
+				point.setLocation((int)(r*Math.cos(theta)+.5+size/2.0),(int)(r*Math.sin(theta)+.5+size/2.0));
 			}
 		} else if(mode==ColorPicker.RED) {
-			point = new Point((int)(green*size/255f+.49f),
+			point.setLocation((int)(green*size/255f+.49f),
 					(int)(blue*size/255f+.49f) );
 		} else if(mode==ColorPicker.GREEN) {
-			point = new Point((int)(red*size/255f+.49f),
+			point.setLocation((int)(red*size/255f+.49f),
 					(int)(blue*size/255f+.49f) );
 		} else if(mode==ColorPicker.BLUE) {
-			point = new Point((int)(red*size/255f+.49f),
+			point.setLocation((int)(red*size/255f+.49f),
 					(int)(green*size/255f+.49f) );
 		}
 	}
 	
+	/** @return the length (in pixels) the graphic is painted at. */
+	private int getImageSize() {
+		return Math.min(MAX_SIZE, Math.min(getWidth()-imagePadding.left-imagePadding.right,getHeight()-imagePadding.top-imagePadding.bottom));
+	}
+	
 	/** A row of pixel data we recycle every time we regenerate this image. */
-	private int[] row = new int[MAX_SIZE];
-	/** Regenerates the image. */
-	private synchronized void regenerateImage() {
-		int size = Math.min(MAX_SIZE, Math.min(getWidth()-imagePadding.left-imagePadding.right,getHeight()-imagePadding.top-imagePadding.bottom));
+	private int[] row = new int[0];
+	
+	/** Regenerates the image at full resolution. */
+	private void regenerateImage() {
+		refineTimer.stop();
+		regenerateImage(getImageSize());
+	}
+	
+	/** Regenerates the image.  The pixels are calculated by <code>ColorPickerPlane</code>.
+	 * 
+	 * @param size the length of the graphic to render.  If this is smaller
+	 * than the painted size then the image is upscaled when painted.
+	 */
+	private synchronized void regenerateImage(int size) {
+		if(size<0) size = 0;
+		imageSize = size;
 		
-		if(mode==ColorPicker.BRI || mode==ColorPicker.SAT) {
-			float bri2 = this.bri;
-			float sat2 = this.sat;
-			float radius = (size)/2f;
-			float hue2;
-			float k = 1.2f; //the number of pixels to antialias
-			for(int y = 0; y<size; y++) {
-				float y2 = (y-size/2f);
-				for(int x = 0; x<size; x++) {
-					float x2 = (x-size/2f);
-					double theta = Math.atan2(y2,x2)-3*Math.PI/2.0;
-					if(theta<0) theta+=2*Math.PI;
-					
-					double r = Math.sqrt(x2*x2+y2*y2);
-					if(r<=radius) {
-						if(mode==ColorPicker.BRI) {
-							hue2 = (float)(theta/(2*Math.PI));
-							sat2 = (float)(r/radius);
-						} else { //SAT
-							hue2 = (float)(theta/(2*Math.PI));
-							bri2 = (float)(r/radius);
-						}
-						row[x] = Color.HSBtoRGB(hue2, sat2, bri2);
-						if(r>radius-k) {
-							int alpha = (int)(255-255*(r-radius+k)/k);
-							if(alpha<0) alpha = 0;
-							if(alpha>255) alpha = 255;
-							row[x] = row[x] & 0xffffff+(alpha << 24);
-						}
-					} else {
-						row[x] = 0x00000000;
-					}
-				}
-				image.getRaster().setDataElements(0, y, size, 1, row);
-			}
-		} else if(mode==ColorPicker.HUE) {
-			float hue2 = this.hue;
-			for(int y = 0; y<size; y++) {
-				float y2 = ((float)y)/((float)size);
-				for(int x = 0; x<size; x++) {
-					float x2 = ((float)x)/((float)size);
-					row[x] = Color.HSBtoRGB(hue2, x2, y2);
-				}
-				image.getRaster().setDataElements(0, y, image.getWidth(), 1, row);
-			}
-		} else { //mode is RED, GREEN, or BLUE
-			int red2 = red;
-			int green2 = green;
-			int blue2 = blue;
-			for(int y = 0; y<size; y++) {
-				float y2 = ((float)y)/((float)size);
-				for(int x = 0; x<size; x++) {
-					float x2 = ((float)x)/((float)size);
-					if(mode==ColorPicker.RED) {
-						green2 = (int)(x2*255+.49);
-						blue2 = (int)(y2*255+.49);
-					} else if(mode==ColorPicker.GREEN) {
-						red2 = (int)(x2*255+.49);
-						blue2 = (int)(y2*255+.49);
-					} else {
-						red2 = (int)(x2*255+.49);
-						green2 = (int)(y2*255+.49);
-					}
-					row[x] = 0xFF000000 + (red2 << 16) + (green2 << 8) + blue2;
-				}
-				image.getRaster().setDataElements(0, y, size, 1, row);
-			}
+		int pixels = (int)Math.round(size*getDeviceScale());
+		imagePixelSize = pixels;
+		if(pixels==0) {
+			repaint();
+			return;
+		}
+		BufferedImage bi = getImage(pixels);
+		if(row.length<pixels)
+			row = new int[pixels];
+		
+		float fixedValue = getFixedValue();
+		for(int y = 0; y<pixels; y++) {
+			ColorPickerPlane.render(mode, fixedValue, pixels, y, 1, row, 0, pixels);
+			bi.getRaster().setDataElements(0, y, pixels, 1, row);
 		}
 		repaint();
 	}
+	
+	/** Returns an image that is at least <code>pixels</code> wide and tall.
+	 * <P>The current image is reused if it is large enough, unless it is more than
+	 * twice as large as necessary.  (So the half resolution previews shown while
+	 * resizing reuse the full size image.)
+	 */
+	private BufferedImage getImage(int pixels) {
+		if(image==null || image.getWidth()<pixels || image.getWidth()>2*pixels) {
+			image = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+		}
+		return image;
+	}
+	
+	/** @return the number of device pixels per logical pixel.  This is taken from the
+	 * last transform this panel was painted with, or else from its <code>GraphicsConfiguration</code>.
+	 */
+	private double getDeviceScale() {
+		if(deviceScale==1) {
+			GraphicsConfiguration gc = getGraphicsConfiguration();
+			if(gc!=null) {
+				double scale = Math.abs(gc.getDefaultTransform().getScaleX());
+				deviceScale = Math.min(MAX_SCALE, Math.max(1, scale));
+			}
+		}
+		return deviceScale;
+	}
+	
+	/** @return the value of the channel this panel's mode holds constant,
+	 * as <code>ColorPickerPlane</code> expects it.
+	 */
+	private float getFixedValue() {
+		if(mode==ColorPicker.HUE) {
+			return hue;
+		} else if(mode==ColorPicker.SAT) {
+			return sat;
+		} else if(mode==ColorPicker.BRI) {
+			return bri;
+		} else if(mode==ColorPicker.RED) {
+			return red;
+		} else if(mode==ColorPicker.GREEN) {
+			return green;
+		}
+		return blue;
+	}
 }
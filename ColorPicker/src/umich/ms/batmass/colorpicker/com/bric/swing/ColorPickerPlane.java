@@ -0,0 +1,188 @@
+/*
+ * @(#)ColorPickerPlane.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.swing;
+
+/** Renders the graphic a <code>ColorPickerPanel</code> displays into an array of pixels.
+ * <P>These are pure functions: the output only depends on the arguments.  This class
+ * doesn't use (or load) any AWT or Swing classes, so it can be used on headless machines
+ * to test or benchmark the rendering, or to export color wheels as images.
+ * <P>Pixels are ints packed as 0xAARRGGBB, as used by <code>BufferedImage.TYPE_INT_ARGB</code>.
+ * The modes are the constants from the <code>ColorPicker</code> class:
+ * <ul><li><code>SAT</code> and <code>BRI</code> render a wheel with the hue around the circle
+ * and the other (non-constant) value increasing from the center.  Pixels outside the wheel
+ * are transparent, and the edge is antialiased.</li>
+ * <li><code>HUE</code> renders a square with the saturation increasing to the right and
+ * the brightness increasing downward.</li>
+ * <li><code>RED</code>, <code>GREEN</code> and <code>BLUE</code> render a square with the
+ * first of the other two channels increasing to the right and the second increasing downward.</li></ul>
+ *
+ */
+public final class ColorPickerPlane {
+
+	private ColorPickerPlane() {}
+
+	/** The number of pixels the edge of a wheel is antialiased over. */
+	private static final float ANTIALIAS_WIDTH = 1.2f;
+
+	/** Renders a complete graphic.
+	 *
+	 * @param mode HUE, SAT, BRI, RED, GREEN or BLUE (see <code>ColorPicker</code>).
+	 * @param fixedValue the value of the channel held constant: between [0,1] in
+	 * HUE, SAT and BRI modes, and between [0,255] in RED, GREEN and BLUE modes.
+	 * @param size the width and height of the graphic.
+	 * @return a new array of <code>size*size</code> pixels.
+	 */
+	public static int[] render(int mode,float fixedValue,int size) {
+		int[] dest = new int[size*size];
+		render(mode, fixedValue, size, 0, size, dest, 0, size);
+		return dest;
+	}
+
+	/** Renders some rows of a graphic into an existing array.
+	 *
+	 * @param mode HUE, SAT, BRI, RED, GREEN or BLUE (see <code>ColorPicker</code>).
+	 * @param fixedValue the value of the channel held constant: between [0,1] in
+	 * HUE, SAT and BRI modes, and between [0,255] in RED, GREEN and BLUE modes.
+	 * @param size the width and height of the whole graphic.
+	 * @param firstRow the first row to render.
+	 * @param rowCount the number of rows to render.
+	 * @param dest the array to store pixels in.
+	 * @param offset the index in <code>dest</code> to store the first pixel of <code>firstRow</code> at.
+	 * @param scanSize the distance in <code>dest</code> from one row to the next.
+	 */
+	public static void render(int mode,float fixedValue,int size,int firstRow,int rowCount,int[] dest,int offset,int scanSize) {
+		if(size<0)
+			throw new IllegalArgumentException("size ("+size+") must not be negative");
+		if(firstRow<0 || rowCount<0 || firstRow+rowCount>size)
+			throw new IllegalArgumentException("the rows ["+firstRow+", "+(firstRow+rowCount)+") must be within [0, "+size+")");
+		if(mode==ColorPicker.BRI || mode==ColorPicker.SAT) {
+			renderWheel(mode, fixedValue, size, firstRow, rowCount, dest, offset, scanSize);
+		} else if(mode==ColorPicker.HUE) {
+			renderHue(fixedValue, size, firstRow, rowCount, dest, offset, scanSize);
+		} else if(mode==ColorPicker.RED || mode==ColorPicker.GREEN || mode==ColorPicker.BLUE) {
+			renderRGB(mode, Math.round(fixedValue), size, firstRow, rowCount, dest, offset, scanSize);
+		} else {
+			throw new IllegalArgumentException("The mode must be HUE, SAT, BRI, RED, GREEN, or BLUE.");
+		}
+	}
+
+	private static void renderWheel(int mode,float fixedValue,int size,int firstRow,int rowCount,int[] dest,int offset,int scanSize) {
+		float radius = (size)/2f;
+		float k = ANTIALIAS_WIDTH;
+		for(int y = firstRow; y<firstRow+rowCount; y++) {
+			float y2 = (y-size/2f);
+			int i = offset + (y-firstRow)*scanSize;
+			for(int x = 0; x<size; x++, i++) {
+				float x2 = (x-size/2f);
+				double r = Math.sqrt(x2*x2+y2*y2);
+				if(r<=radius) {
+					double theta = Math.atan2(y2,x2)-3*Math.PI/2.0;
+					if(theta<0) theta+=2*Math.PI;
+					float hue = (float)(theta/(2*Math.PI));
+					float v = (float)(r/radius);
+					int rgb = mode==ColorPicker.BRI ? HSBtoRGB(hue, v, fixedValue) : HSBtoRGB(hue, fixedValue, v);
+					if(r>radius-k) {
+						int alpha = (int)(255-255*(r-radius+k)/k);
+						if(alpha<0) alpha = 0;
+						if(alpha>255) alpha = 255;
+						rgb = (rgb & 0xffffff) | (alpha << 24);
+					}
+					dest[i] = rgb;
+				} else {
+					dest[i] = 0x00000000;
+				}
+			}
+		}
+	}
+
+	private static void renderHue(float hue,int size,int firstRow,int rowCount,int[] dest,int offset,int scanSize) {
+		for(int y = firstRow; y<firstRow+rowCount; y++) {
+			float y2 = ((float)y)/((float)size);
+			int i = offset + (y-firstRow)*scanSize;
+			for(int x = 0; x<size; x++, i++) {
+				float x2 = ((float)x)/((float)size);
+				dest[i] = HSBtoRGB(hue, x2, y2);
+			}
+		}
+	}
+
+	private static void renderRGB(int mode,int fixedValue,int size,int firstRow,int rowCount,int[] dest,int offset,int scanSize) {
+		int shift;
+		int xShift, yShift;
+		if(mode==ColorPicker.RED) {
+			shift = 16; xShift = 8; yShift = 0;
+		} else if(mode==ColorPicker.GREEN) {
+			shift = 8; xShift = 16; yShift = 0;
+		} else {
+			shift = 0; xShift = 16; yShift = 8;
+		}
+		int fixed = 0xff000000 | (Math.min(255, Math.max(0, fixedValue)) << shift);
+		for(int y = firstRow; y<firstRow+rowCount; y++) {
+			float y2 = ((float)y)/((float)size);
+			int rowBase = fixed | ((int)(y2*255+.49) << yShift);
+			int i = offset + (y-firstRow)*scanSize;
+			for(int x = 0; x<size; x++, i++) {
+				float x2 = ((float)x)/((float)size);
+				dest[i] = rowBase | ((int)(x2*255+.49) << xShift);
+			}
+		}
+	}
+
+	/** Converts HSB values to an opaque RGB color packed as 0xAARRGGBB.
+	 * <P>This produces exactly the same results as <code>java.awt.Color.HSBtoRGB()</code>,
+	 * without loading AWT.
+	 *
+	 * @param hue the hue.  Only the fractional part is used, so this can be any value.
+	 * @param saturation the saturation, between [0,1].
+	 * @param brightness the brightness, between [0,1].
+	 */
+	public static int HSBtoRGB(float hue,float saturation,float brightness) {
+		int r = 0, g = 0, b = 0;
+		if (saturation == 0) {
+			r = g = b = (int) (brightness * 255.0f + 0.5f);
+		} else {
+			float h = (hue - (float)Math.floor(hue)) * 6.0f;
+			float f = h - (float)Math.floor(h);
+			float p = brightness * (1.0f - saturation);
+			float q = brightness * (1.0f - saturation * f);
+			float t = brightness * (1.0f - (saturation * (1.0f - f)));
+			switch ((int) h) {
+			case 0:
+				r = (int) (brightness * 255.0f + 0.5f);
+				g = (int) (t * 255.0f + 0.5f);
+				b = (int) (p * 255.0f + 0.5f);
+				break;
+			case 1:
+				r = (int) (q * 255.0f + 0.5f);
+				g = (int) (brightness * 255.0f + 0.5f);
+				b = (int) (p * 255.0f + 0.5f);
+				break;
+			case 2:
+				r = (int) (p * 255.0f + 0.5f);
+				g = (int) (brightness * 255.0f + 0.5f);
+				b = (int) (t * 255.0f + 0.5f);
+				break;
+			case 3:
+				r = (int) (p * 255.0f + 0.5f);
+				g = (int) (q * 255.0f + 0.5f);
+				b = (int) (brightness * 255.0f + 0.5f);
+				break;
+			case 4:
+				r = (int) (t * 255.0f + 0.5f);
+				g = (int) (p * 255.0f + 0.5f);
+				b = (int) (brightness * 255.0f + 0.5f);
+				break;
+			case 5:
+				r = (int) (brightness * 255.0f + 0.5f);
+				g = (int) (p * 255.0f + 0.5f);
+				b = (int) (q * 255.0f + 0.5f);
+				break;
+			}
+		}
+		return 0xff000000 | (r << 16) | (g << 8) | (b << 0);
+	}
+}
@@ -0,0 +1,447 @@
+/*
+ * @(#)ColorStore.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.swing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/** The recently used and favorite colors, shared by every <code>ColorPicker</code>
+ * that displays them.
+ * <P>The colors are kept in a small memory-mapped file, so they survive restarts
+ * without parsing preferences.  The file is a log: every change appends one 8-byte
+ * record (an operation and a color packed as 0xAARRGGBB).  Appends claim their slot with
+ * an atomic counter and then write it, so they never block.  When the log is full it is
+ * compacted: it is rewritten with just the current favorites and recent colors.
+ * <P>The file is opened and read on a background thread, so creating a store
+ * (or a picker that shows one) never waits for the disk.  Until that is done the
+ * store reflects only the changes made in this session; once the file has been read,
+ * its contents are merged with those changes and listeners are notified.
+ * <P>Only one process can write the file: a store holds a lock on it for as long as
+ * the application runs.  A store that finds the file locked by another process
+ * shows the colors it holds, but keeps its own changes in memory only.
+ * <P>There are at most {@link #FAVORITE_LIMIT} favorites, so compacting always frees
+ * most of the log.
+ * <P>All methods are thread-safe.  Listeners are always notified on the event dispatch thread.
+ */
+public class ColorStore {
+
+	/** The maximum number of recent colors kept. */
+	public static final int RECENT_LIMIT = 16;
+
+	/** The maximum number of favorite colors kept.  Adding another drops the oldest. */
+	public static final int FAVORITE_LIMIT = 256;
+
+	/** The number of records the log holds before it is compacted. */
+	static final int CAPACITY = 1024;
+
+	private static final int MAGIC = 0x42434f4c; //"BCOL"
+	private static final int VERSION = 1;
+	/** The header is the magic number, the version and the capacity. */
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_SIZE = 8;
+
+	/* The operations a record can describe.  A record with no operation marks the end of the log. */
+	private static final int OP_RECENT = 1;
+	private static final int OP_FAVORITE = 2;
+	private static final int OP_UNFAVORITE = 3;
+
+	private static ColorStore defaultStore;
+
+	/** Returns the store shared by the whole application.  This is kept in
+	 * <code>colorpicker/colors.bin</code> in the NetBeans user directory,
+	 * or in <code>.batmass</code> in the user's home directory if that is not defined.
+	 */
+	public static synchronized ColorStore getDefault() {
+		if(defaultStore==null) {
+			String dir = System.getProperty("netbeans.user");
+			File parent = dir!=null ? new File(dir, "colorpicker") :
+				new File(System.getProperty("user.home"), ".batmass");
+			defaultStore = new ColorStore(new File(parent, "colors.bin"));
+		}
+		return defaultStore;
+	}
+
+	/** The colors as of the last change.  Snapshots are immutable, and replaced by compare-and-set. */
+	private static class Snapshot {
+		static final Snapshot EMPTY = new Snapshot(new int[0], new int[0]);
+
+		/** The recent colors, most recent first. */
+		final int[] recent;
+		/** The favorite colors, in the order they were added. */
+		final int[] favorites;
+
+		Snapshot(int[] recent,int[] favorites) {
+			this.recent = recent;
+			this.favorites = favorites;
+		}
+
+		Snapshot apply(int op,int argb) {
+			if(op==OP_RECENT) {
+				int i = indexOf(recent, argb);
+				if(i==0)
+					return this;
+				int n = i>=0 ? recent.length : Math.min(RECENT_LIMIT, recent.length+1);
+				int[] r = new int[n];
+				r[0] = argb;
+				for(int a = 0, b = 1; b<n; a++) {
+					if(a!=i)
+						r[b++] = recent[a];
+				}
+				return new Snapshot(r, favorites);
+			} else if(op==OP_FAVORITE) {
+				if(indexOf(favorites, argb)>=0)
+					return this;
+				//the oldest favorite makes room, so replaying the log gives the same result
+				int drop = favorites.length<FAVORITE_LIMIT ? 0 : favorites.length-FAVORITE_LIMIT+1;
+				int[] f = new int[favorites.length-drop+1];
+				System.arraycopy(favorites, drop, f, 0, favorites.length-drop);
+				f[f.length-1] = argb;
+				return new Snapshot(recent, f);
+			} else if(op==OP_UNFAVORITE) {
+				int i = indexOf(favorites, argb);
+				if(i<0)
+					return this;
+				int[] f = new int[favorites.length-1];
+				System.arraycopy(favorites, 0, f, 0, i);
+				System.arraycopy(favorites, i+1, f, i, f.length-i);
+				return new Snapshot(recent, f);
+			}
+			return this;
+		}
+	}
+
+	private final File file;
+
+	/** The mapped file, or <code>null</code> until it has been read (or if it can't be used). */
+	private volatile MappedByteBuffer buffer;
+	/** The index of the next free record in the log. */
+	private final AtomicInteger nextRecord = new AtomicInteger();
+	/** The number of threads currently writing a record. */
+	private final AtomicInteger writers = new AtomicInteger();
+	/** Whether the log is being compacted.  New records wait until that is finished. */
+	private volatile boolean compacting = false;
+
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(Snapshot.EMPTY);
+	/** Whether changes are only kept in memory, because the file couldn't be mapped or
+	 * is used by another process. */
+	private volatile boolean memoryOnly = false;
+	/** The lock on the file, held for the rest of the session once the file is mapped. */
+	private FileLock lock;
+	/** The records made before the file was mapped.  These are written when it is. */
+	private final ConcurrentLinkedQueue<Long> unwritten = new ConcurrentLinkedQueue<Long>();
+
+	private volatile ChangeListener[] listeners = new ChangeListener[0];
+	private final ChangeEvent changeEvent = new ChangeEvent(this);
+	/** Whether listeners have already been scheduled to be notified. */
+	private final AtomicBoolean notifying = new AtomicBoolean();
+
+	/** Creates a store and starts reading its file on a background thread.
+	 *
+	 * @param file the file to keep colors in.  It (and its parent directory) is created if necessary.
+	 */
+	public ColorStore(File file) {
+		this.file = file;
+		Thread loader = new Thread("ColorStore loader") {
+			@Override
+			public void run() {
+				load();
+			}
+		};
+		loader.setDaemon(true);
+		loader.setPriority(Thread.MIN_PRIORITY);
+		loader.start();
+	}
+
+	/** @return the file this store keeps its colors in. */
+	public File getFile() {
+		return file;
+	}
+
+	/** @return whether reading the file has finished.  Until then only changes made in this session are visible,
+	 * and so they remain if the file couldn't be read.
+	 */
+	public boolean isLoaded() {
+		return buffer!=null || memoryOnly;
+	}
+
+	/** Moves a color to the front of the recent colors.
+	 *
+	 * @param argb the color packed as 0xAARRGGBB.
+	 */
+	public void addRecent(int argb) {
+		record(OP_RECENT, argb);
+	}
+
+	/** Adds a color to, or removes it from, the favorites.  If there already are
+	 * {@link #FAVORITE_LIMIT} favorites, adding one removes the oldest.
+	 *
+	 * @param argb the color packed as 0xAARRGGBB.
+	 */
+	public void setFavorite(int argb,boolean favorite) {
+		if(favorite!=isFavorite(argb))
+			record(favorite ? OP_FAVORITE : OP_UNFAVORITE, argb);
+	}
+
+	/** @return whether a color (packed as 0xAARRGGBB) is one of the favorites. */
+	public boolean isFavorite(int argb) {
+		return indexOf(snapshot.get().favorites, argb)>=0;
+	}
+
+	/** @return the recent colors packed as 0xAARRGGBB, most recent first. */
+	public int[] getRecentColors() {
+		return snapshot.get().recent.clone();
+	}
+
+	/** @return the favorite colors packed as 0xAARRGGBB, in the order they were added. */
+	public int[] getFavoriteColors() {
+		return snapshot.get().favorites.clone();
+	}
+
+	/** Adds a listener that is notified on the event dispatch thread when the colors change. */
+	public synchronized void addChangeListener(ChangeListener l) {
+		ChangeListener[] newListeners = new ChangeListener[listeners.length+1];
+		System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+		newListeners[listeners.length] = l;
+		listeners = newListeners;
+	}
+
+	public synchronized void removeChangeListener(ChangeListener l) {
+		for(int a = 0; a<listeners.length; a++) {
+			if(listeners[a]==l) {
+				ChangeListener[] newListeners = new ChangeListener[listeners.length-1];
+				System.arraycopy(listeners, 0, newListeners, 0, a);
+				System.arraycopy(listeners, a+1, newListeners, a, newListeners.length-a);
+				listeners = newListeners;
+				return;
+			}
+		}
+	}
+
+	private void record(int op,int argb) {
+		long rec = ((long)op << 32) | (argb & 0xffffffffL);
+		//this must be queued before the snapshot changes, so load() can't miss it
+		boolean queued = buffer==null && !memoryOnly;
+		if(queued)
+			unwritten.add(rec);
+		while(true) {
+			Snapshot s = snapshot.get();
+			Snapshot t = s.apply(op, argb);
+			if(t==s || snapshot.compareAndSet(s, t))
+				break;
+		}
+		if(queued)
+			writeUnwritten();
+		else
+			write(rec);
+		fireChanged();
+	}
+
+	/** Writes the queued records, if the file has been mapped. */
+	private void writeUnwritten() {
+		if(buffer==null)
+			return;
+		Long rec;
+		while((rec = unwritten.poll())!=null) {
+			write(rec.longValue());
+		}
+	}
+
+	/** Appends a record to the log, compacting it first if it is full. */
+	private void write(long rec) {
+		MappedByteBuffer b = buffer;
+		if(b==null)
+			return;
+		while(true) {
+			writers.incrementAndGet();
+			try {
+				if(!compacting) {
+					int i = nextRecord.getAndIncrement();
+					if(i<CAPACITY) {
+						//absolute puts don't touch the buffer's position, so threads can share it
+						b.putLong(HEADER_SIZE + i*RECORD_SIZE, rec);
+						return;
+					}
+				}
+			} finally {
+				writers.decrementAndGet();
+			}
+			if(!compact(b))
+				return;
+		}
+	}
+
+	/** Rewrites the log as the current snapshot.
+	 *
+	 * @return whether the log has a free record afterwards.  If it doesn't, the store
+	 * stops writing the file and only keeps its colors in memory.
+	 */
+	private synchronized boolean compact(MappedByteBuffer b) {
+		compacting = true;
+		try {
+			while(writers.get()>0) {
+				Thread.yield();
+			}
+			if(buffer!=b)
+				return false; //the file was given up while this thread waited
+			if(nextRecord.get()<CAPACITY)
+				return true; //another thread just compacted the log
+
+			//the snapshot already includes every record that was waiting for this
+			Snapshot s = snapshot.get();
+			if(s.favorites.length+s.recent.length>=CAPACITY) {
+				//can't happen within the limits, but never loop or write past the log
+				memoryOnly = true;
+				buffer = null;
+				return false;
+			}
+			int i = 0;
+			for(int a = 0; a<s.favorites.length; a++) {
+				b.putLong(HEADER_SIZE + (i++)*RECORD_SIZE, ((long)OP_FAVORITE << 32) | (s.favorites[a] & 0xffffffffL));
+			}
+			for(int a = s.recent.length-1; a>=0; a--) {
+				b.putLong(HEADER_SIZE + (i++)*RECORD_SIZE, ((long)OP_RECENT << 32) | (s.recent[a] & 0xffffffffL));
+			}
+			for(int a = i; a<CAPACITY; a++) {
+				b.putLong(HEADER_SIZE + a*RECORD_SIZE, 0);
+			}
+			nextRecord.set(i);
+			return true;
+		} finally {
+			compacting = false;
+		}
+	}
+
+	/** Maps and locks the file, replays its log and merges it with the changes made so far.
+	 * If another process holds the lock, the file is only read.
+	 */
+	private void load() {
+		MappedByteBuffer b;
+		boolean locked = false;
+		try {
+			File parent = file.getParentFile();
+			if(parent!=null)
+				parent.mkdirs();
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				FileChannel channel = raf.getChannel();
+				try {
+					lock = channel.tryLock();
+				} catch(OverlappingFileLockException e) {
+					//another store of this process has the file
+				}
+				locked = lock!=null;
+				long size = HEADER_SIZE + CAPACITY*RECORD_SIZE;
+				if(locked) {
+					try {
+						b = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+					} catch(IOException e) {
+						locked = false;
+						lock = null;
+						throw e;
+					}
+				} else {
+					//a read-only mapping can't grow the file
+					b = channel.size()>=size ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+				}
+			} finally {
+				//the lock is released when the file is closed, so a locked file stays open;
+				//the mapping remains valid either way
+				if(!locked)
+					raf.close();
+			}
+		} catch(IOException e) {
+			//without a file the colors are only kept for this session
+			e.printStackTrace();
+			//set first, so record() stops queueing before the queue is dropped
+			memoryOnly = true;
+			unwritten.clear();
+			return;
+		}
+
+		boolean valid = b!=null && b.getInt(0)==MAGIC && b.getInt(4)==VERSION && b.getInt(8)==CAPACITY;
+		if(locked && !valid) {
+			for(int a = 0; a<b.capacity(); a += RECORD_SIZE) {
+				b.putLong(a, 0);
+			}
+			b.putInt(0, MAGIC);
+			b.putInt(4, VERSION);
+			b.putInt(8, CAPACITY);
+			valid = true;
+		}
+
+		Snapshot fromFile = Snapshot.EMPTY;
+		int n = 0;
+		while(valid && n<CAPACITY) {
+			long rec = b.getLong(HEADER_SIZE + n*RECORD_SIZE);
+			int op = (int)(rec >>> 32);
+			if(op==0)
+				break;
+			fromFile = fromFile.apply(op, (int)rec);
+			n++;
+		}
+		nextRecord.set(n);
+
+		//replay this session's changes on top of the file
+		while(true) {
+			Snapshot s = snapshot.get();
+			Snapshot merged = fromFile;
+			for(Long rec : unwritten) {
+				merged = merged.apply((int)(rec.longValue() >>> 32), (int)rec.longValue());
+			}
+			if(snapshot.compareAndSet(s, merged))
+				break;
+		}
+		if(!locked) {
+			memoryOnly = true;
+			unwritten.clear();
+			fireChanged();
+			return;
+		}
+		buffer = b;
+		writeUnwritten();
+		fireChanged();
+	}
+
+	private void fireChanged() {
+		if(!notifying.compareAndSet(false, true))
+			return;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				notifying.set(false);
+				ChangeListener[] l = listeners;
+				for(int a = 0; a<l.length; a++) {
+					try {
+						l[a].stateChanged(changeEvent);
+					} catch(RuntimeException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		});
+	}
+
+	private static int indexOf(int[] array,int v) {
+		for(int a = 0; a<array.length; a++) {
+			if(array[a]==v)
+				return a;
+		}
+		return -1;
+	}
+}
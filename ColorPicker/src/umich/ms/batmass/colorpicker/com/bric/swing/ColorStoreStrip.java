@@ -0,0 +1,234 @@
+/*
+ * @(#)ColorStoreStrip.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.swing;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import javax.swing.JComponent;
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import umich.ms.batmass.colorpicker.com.bric.util.HexColors;
+
+/** A row of swatches showing the favorite colors of a <code>ColorStore</code>,
+ * followed by its recent colors.
+ * <P>Clicking a swatch selects its color in the picker.  Right-clicking offers to
+ * add the selected color (or the swatch) to the favorites, or to remove a favorite.
+ * <P>This paints every swatch itself (see <code>ColorSwatchRenderer.paintSwatch()</code>)
+ * instead of using a component per color.
+ *
+ */
+class ColorStoreStrip extends JComponent {
+	private static final long serialVersionUID = 1L;
+
+	private static final int SWATCH_SIZE = 14;
+	private static final int GAP = 2;
+	/** The extra space between the favorites and the recent colors. */
+	private static final int SEPARATOR = 8;
+
+	private final ColorPicker picker;
+	private ColorStore store;
+
+	/** The colors displayed, favorites first, and how many of them are favorites. */
+	private int[] colors = new int[0];
+	private int favoriteCount = 0;
+
+	/** The index of the swatch the popup menu was shown for, or -1. */
+	private int popupIndex = -1;
+	private JPopupMenu popup;
+	private JMenuItem addFavoriteItem, removeFavoriteItem;
+
+	private final Rectangle swatchBounds = new Rectangle();
+
+	private final ChangeListener storeListener = new ChangeListener() {
+		public void stateChanged(ChangeEvent e) {
+			refresh();
+		}
+	};
+
+	ColorStoreStrip(ColorPicker picker) {
+		this.picker = picker;
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				if(e.isPopupTrigger()) {
+					showPopup(e);
+				}
+			}
+
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				if(e.isPopupTrigger()) {
+					showPopup(e);
+				}
+			}
+
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				if(SwingUtilities.isLeftMouseButton(e)) {
+					int i = getIndexAt(e.getX(), e.getY());
+					if(i>=0)
+						ColorStoreStrip.this.picker.setColor(new Color(colors[i], true));
+				}
+			}
+		});
+		setToolTipText("");
+	}
+
+	void setStore(ColorStore s) {
+		if(store==s)
+			return;
+		if(store!=null && isDisplayable())
+			store.removeChangeListener(storeListener);
+		store = s;
+		if(store!=null && isDisplayable())
+			store.addChangeListener(storeListener);
+		refresh();
+	}
+
+	ColorStore getStore() {
+		return store;
+	}
+
+	/* The store is only listened to while this strip is displayable,
+	 * so a shared store doesn't keep discarded pickers in memory.
+	 */
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		if(store!=null) {
+			store.addChangeListener(storeListener);
+			refresh();
+		}
+	}
+
+	@Override
+	public void removeNotify() {
+		if(store!=null)
+			store.removeChangeListener(storeListener);
+		super.removeNotify();
+	}
+
+	/** Reads the colors from the store. */
+	private void refresh() {
+		int[] favorites = store==null ? new int[0] : store.getFavoriteColors();
+		int[] recent = store==null ? new int[0] : store.getRecentColors();
+		int[] newColors = new int[favorites.length + recent.length];
+		System.arraycopy(favorites, 0, newColors, 0, favorites.length);
+		System.arraycopy(recent, 0, newColors, favorites.length, recent.length);
+		boolean resize = newColors.length!=colors.length || favorites.length!=favoriteCount;
+		colors = newColors;
+		favoriteCount = favorites.length;
+		if(resize)
+			revalidate();
+		repaint();
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		if(isPreferredSizeSet())
+			return super.getPreferredSize();
+		Insets i = getInsets();
+		int w = colors.length*(SWATCH_SIZE+GAP);
+		if(favoriteCount>0 && favoriteCount<colors.length)
+			w += SEPARATOR;
+		return new Dimension(w + i.left + i.right, SWATCH_SIZE+1 + i.top + i.bottom);
+	}
+
+	@Override
+	public Dimension getMinimumSize() {
+		if(isMinimumSizeSet())
+			return super.getMinimumSize();
+		Insets i = getInsets();
+		return new Dimension(i.left + i.right, SWATCH_SIZE+1 + i.top + i.bottom);
+	}
+
+	/** Stores the bounds of a swatch in <code>swatchBounds</code>. */
+	private void getSwatchBounds(int index) {
+		Insets i = getInsets();
+		int x = i.left + index*(SWATCH_SIZE+GAP);
+		if(index>=favoriteCount && favoriteCount>0)
+			x += SEPARATOR;
+		swatchBounds.setBounds(x, i.top, SWATCH_SIZE, SWATCH_SIZE);
+	}
+
+	/** @return the index of the swatch at a point, or -1. */
+	private int getIndexAt(int x,int y) {
+		for(int a = 0; a<colors.length; a++) {
+			getSwatchBounds(a);
+			if(swatchBounds.contains(x, y))
+				return a;
+		}
+		return -1;
+	}
+
+	@Override
+	public String getToolTipText(MouseEvent e) {
+		int i = getIndexAt(e.getX(), e.getY());
+		if(i<0)
+			return null;
+		return HexColors.toString(colors[i], false);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g0) {
+		Graphics2D g = (Graphics2D)g0;
+		Rectangle clip = g.getClipBounds();
+		for(int a = 0; a<colors.length; a++) {
+			getSwatchBounds(a);
+			if(swatchBounds.x>getWidth())
+				break;
+			if(clip==null || clip.intersects(swatchBounds))
+				ColorSwatchRenderer.paintSwatch(g, colors[a], swatchBounds);
+		}
+	}
+
+	private void showPopup(MouseEvent e) {
+		if(store==null)
+			return;
+		if(popup==null) {
+			popup = new JPopupMenu();
+			addFavoriteItem = new JMenuItem(ColorPicker.getStrings().getObject("addFavorite").toString());
+			removeFavoriteItem = new JMenuItem(ColorPicker.getStrings().getObject("removeFavorite").toString());
+			ActionListener actionListener = new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					int argb = getPopupColor();
+					store.setFavorite(argb, e.getSource()==addFavoriteItem);
+				}
+			};
+			addFavoriteItem.addActionListener(actionListener);
+			removeFavoriteItem.addActionListener(actionListener);
+			popup.add(addFavoriteItem);
+			popup.add(removeFavoriteItem);
+		}
+		popupIndex = getIndexAt(e.getX(), e.getY());
+		boolean favorite = store.isFavorite(getPopupColor());
+		addFavoriteItem.setEnabled(!favorite);
+		removeFavoriteItem.setEnabled(favorite);
+		popup.show(this, e.getX(), e.getY());
+	}
+
+	/** @return the swatch the popup menu was shown for, or the selected color if it wasn't shown for a swatch. */
+	private int getPopupColor() {
+		if(popupIndex>=0 && popupIndex<colors.length)
+			return colors[popupIndex];
+		return picker.getColor().getRGB();
+	}
+}
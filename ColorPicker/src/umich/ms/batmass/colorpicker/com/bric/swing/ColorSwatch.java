@@ -62,7 +62,7 @@ public class ColorSwatch extends JPanel {
 			if(e.isPopupTrigger()) {
 				if(menu==null) {
 					menu = new JPopupMenu();
-					copyItem = new JMenuItem(ColorPicker.strings.getObject("Copy").toString());
+					copyItem = new JMenuItem(ColorPicker.getStrings().getObject("Copy").toString());
 					menu.add(copyItem);
 					copyItem.addActionListener(actionListener);
 				}
@@ -99,7 +99,10 @@ public class ColorSwatch extends JPanel {
 	}
 	
 	private static TexturePaint checkerPaint = null;
-	private static TexturePaint getCheckerPaint() {
+	/** @return the checkerboard painted underneath translucent colors.
+	 * This is shared by every swatch (see also <code>ColorSwatchRenderer</code>).
+	 */
+	static TexturePaint getCheckerPaint() {
 		if(checkerPaint==null) {
 			int t = 8;
 			BufferedImage bi = new BufferedImage(t*2,t*2,BufferedImage.TYPE_INT_RGB);
@@ -0,0 +1,332 @@
+/*
+ * @(#)ColorSwatchRenderer.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.swing;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.Icon;
+import javax.swing.JComponent;
+import javax.swing.JList;
+import javax.swing.JTable;
+import javax.swing.ListCellRenderer;
+import javax.swing.UIManager;
+import javax.swing.border.Border;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.TableCellRenderer;
+
+import umich.ms.batmass.colorpicker.com.bric.plaf.PlafPaintUtils;
+
+/** Renders colors in lists and tables the way a <code>ColorSwatch</code> looks,
+ * without creating a component for each color.
+ * <P>Like other Swing renderers, one instance is configured for a cell, painted,
+ * and then configured for the next cell.  Cell values can be <code>Colors</code>,
+ * or <code>Numbers</code> whose <code>intValue()</code> is a color packed as 0xAARRGGBB.
+ * Any other value renders as an empty cell.
+ * <P>Translucent colors are painted over the same checkerboard a <code>ColorSwatch</code>
+ * uses, and every swatch is framed with <code>PlafPaintUtils.drawBevel()</code>.
+ * <P>If the image cache is enabled, each distinct color is painted once
+ * into a slot of a shared atlas image, and after that every cell with that color
+ * is a single image copy.  This helps when large legends repeat a small
+ * number of colors.  The least recently used colors are replaced when
+ * the atlas is full, so its memory use is fixed.
+ * <P>For icons (for example in menus or labels) see <code>createIcon()</code>.
+ *
+ */
+public class ColorSwatchRenderer extends JComponent implements ListCellRenderer<Object>, TableCellRenderer {
+	private static final long serialVersionUID = 1L;
+
+	/** The number of colors the atlas can hold. */
+	static final int ATLAS_CAPACITY = 256;
+
+	private static final Border noFocusBorder = new EmptyBorder(1, 1, 1, 1);
+
+	/** The length of the swatch painted in each cell. */
+	private final int swatchSize;
+
+	/** The color of the cell being rendered, as 0xAARRGGBB. */
+	private int argb;
+	/** Whether the cell being rendered has a color at all. */
+	private boolean hasColor;
+
+	/** The atlas of prepainted swatches, or <code>null</code> if the image cache is disabled. */
+	private SwatchAtlas atlas;
+
+	/** A recycled rectangle describing where the swatch is painted. */
+	private final Rectangle swatchBounds = new Rectangle();
+
+	/** Creates a renderer without an image cache.
+	 *
+	 * @param swatchSize the width and height of the swatch in each cell.
+	 */
+	public ColorSwatchRenderer(int swatchSize) {
+		this(swatchSize, false);
+	}
+
+	/** Creates a renderer.
+	 *
+	 * @param swatchSize the width and height of the swatch in each cell.
+	 * @param useImageCache whether swatches are prepainted into an atlas image.
+	 */
+	public ColorSwatchRenderer(int swatchSize,boolean useImageCache) {
+		if(swatchSize<1)
+			throw new IllegalArgumentException("swatchSize ("+swatchSize+") must be positive");
+		this.swatchSize = swatchSize;
+		setOpaque(true);
+		setBorder(noFocusBorder);
+		setImageCacheEnabled(useImageCache);
+	}
+
+	/** Controls whether swatches are prepainted into an atlas image.
+	 * Disabling this releases the atlas.
+	 */
+	public void setImageCacheEnabled(boolean b) {
+		if(b && atlas==null) {
+			atlas = new SwatchAtlas(swatchSize, ATLAS_CAPACITY);
+		} else if(!b) {
+			atlas = null;
+		}
+	}
+
+	/** @return whether swatches are prepainted into an atlas image. */
+	public boolean isImageCacheEnabled() {
+		return atlas!=null;
+	}
+
+	/** @return the length of the swatch painted in each cell. */
+	public int getSwatchSize() {
+		return swatchSize;
+	}
+
+	@Override
+	public Component getListCellRendererComponent(JList<?> list,
+			Object value, int index, boolean isSelected, boolean cellHasFocus) {
+		setValue(value);
+		setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+		setFocusBorder(cellHasFocus, "List.focusCellHighlightBorder");
+		return this;
+	}
+
+	@Override
+	public Component getTableCellRendererComponent(JTable table,
+			Object value, boolean isSelected, boolean hasFocus, int row,
+			int column) {
+		setValue(value);
+		setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+		setFocusBorder(hasFocus, "Table.focusCellHighlightBorder");
+		return this;
+	}
+
+	private void setValue(Object value) {
+		if(value instanceof Color) {
+			argb = ((Color)value).getRGB();
+			hasColor = true;
+		} else if(value instanceof Number) {
+			argb = ((Number)value).intValue();
+			hasColor = true;
+		} else {
+			hasColor = false;
+		}
+	}
+
+	private void setFocusBorder(boolean hasFocus,String borderKey) {
+		Border border = null;
+		if(hasFocus)
+			border = UIManager.getBorder(borderKey);
+		setBorder(border==null ? noFocusBorder : border);
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		Insets i = getInsets();
+		return new Dimension(swatchSize+4+i.left+i.right, swatchSize+4+i.top+i.bottom);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g0) {
+		Graphics2D g = (Graphics2D)g0;
+		g.setColor(getBackground());
+		g.fillRect(0, 0, getWidth(), getHeight());
+		if(!hasColor)
+			return;
+
+		Insets i = getInsets();
+		int w = Math.min(swatchSize, getWidth()-i.left-i.right-2);
+		int h = Math.min(swatchSize, getHeight()-i.top-i.bottom-2);
+		if(w<=0 || h<=0)
+			return;
+		swatchBounds.setBounds(getWidth()/2-w/2, getHeight()/2-h/2, w, h);
+
+		if(atlas!=null && w==swatchSize && h==swatchSize) {
+			atlas.paint(g, argb, swatchBounds.x, swatchBounds.y);
+		} else {
+			paintSwatch(g, argb, swatchBounds);
+		}
+	}
+
+	/** Paints a swatch the way <code>ColorSwatch</code> does: the color, on top of
+	 * a checkerboard if it is translucent, framed by a bevel.
+	 *
+	 * @param g the graphics to paint to.
+	 * @param argb the color packed as 0xAARRGGBB.
+	 * @param r the bounds of the swatch.  The bevel is drawn on its edges.
+	 */
+	public static void paintSwatch(Graphics2D g,int argb,Rectangle r) {
+		if((argb >>> 24)<255) {
+			g.setPaint(ColorSwatch.getCheckerPaint());
+			g.fillRect(r.x, r.y, r.width, r.height);
+		}
+		g.setColor(new Color(argb, true));
+		g.fillRect(r.x, r.y, r.width, r.height);
+		PlafPaintUtils.drawBevel(g, r);
+	}
+
+	/** Creates an icon that paints a swatch.  Icons don't hold any
+	 * resources besides the color, so they can be created freely.
+	 *
+	 * @param color the color of the swatch.
+	 * @param size the width and height of the icon.
+	 */
+	public static Icon createIcon(Color color,int size) {
+		return new SwatchIcon(color.getRGB(), size);
+	}
+
+	/* The following methods are overridden for performance reasons,
+	 * just like <code>DefaultListCellRenderer</code> does: a renderer
+	 * is never part of a real hierarchy, so it never needs to be
+	 * validated, repainted or to notify listeners.
+	 */
+
+	@Override
+	public void invalidate() {}
+
+	@Override
+	public void validate() {}
+
+	@Override
+	public void revalidate() {}
+
+	@Override
+	public void repaint(long tm, int x, int y, int width, int height) {}
+
+	@Override
+	public void repaint(Rectangle r) {}
+
+	@Override
+	public void repaint() {}
+
+	@Override
+	protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {}
+
+	@Override
+	public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {}
+
+	/** An <code>Icon</code> that paints one swatch. */
+	private static class SwatchIcon implements Icon {
+		final int argb, size;
+
+		SwatchIcon(int argb,int size) {
+			this.argb = argb;
+			this.size = size;
+		}
+
+		@Override
+		public void paintIcon(Component c, Graphics g, int x, int y) {
+			Graphics2D g2 = (Graphics2D)g.create();
+			try {
+				//the bevel is drawn on the edges, so keep it inside our bounds
+				paintSwatch(g2, argb, new Rectangle(x, y, size-1, size-1));
+			} finally {
+				g2.dispose();
+			}
+		}
+
+		@Override
+		public int getIconWidth() {
+			return size;
+		}
+
+		@Override
+		public int getIconHeight() {
+			return size;
+		}
+	}
+
+	/** A fixed-size image that stores prepainted swatches in a grid of slots.
+	 * <P>This is only used on the event dispatch thread, so it isn't synchronized.
+	 */
+	private static class SwatchAtlas {
+		/** The size of one slot.  A slot is one pixel larger than a swatch
+		 * so the bevel fits inside it.
+		 */
+		final int slotSize;
+		final int columns;
+		final BufferedImage image;
+		/** Maps a color to its slot index, in least recently used order. */
+		final LinkedHashMap<Integer, Integer> slots;
+		final Rectangle r = new Rectangle();
+
+		SwatchAtlas(int swatchSize,int capacity) {
+			slotSize = swatchSize+1;
+			columns = (int)Math.ceil(Math.sqrt(capacity));
+			int rows = (capacity+columns-1)/columns;
+			image = new BufferedImage(columns*slotSize, rows*slotSize, BufferedImage.TYPE_INT_ARGB);
+			slots = new LinkedHashMap<Integer, Integer>(capacity*2, .75f, true);
+		}
+
+		void paint(Graphics2D g,int argb,int x,int y) {
+			Integer key = Integer.valueOf(argb);
+			Integer slot = slots.get(key);
+			if(slot==null) {
+				slot = allocateSlot();
+				slots.put(key, slot);
+				paintSlot(slot.intValue(), argb);
+			}
+			int sx = (slot.intValue()%columns)*slotSize;
+			int sy = (slot.intValue()/columns)*slotSize;
+			g.drawImage(image, x, y, x+slotSize, y+slotSize, sx, sy, sx+slotSize, sy+slotSize, null);
+		}
+
+		/** @return an unused slot, evicting the least recently used color if necessary. */
+		private Integer allocateSlot() {
+			int capacity = columns*(image.getHeight()/slotSize);
+			if(slots.size()<capacity)
+				return Integer.valueOf(slots.size());
+			Iterator<Map.Entry<Integer, Integer>> iter = slots.entrySet().iterator();
+			Integer slot = iter.next().getValue();
+			iter.remove();
+			return slot;
+		}
+
+		private void paintSlot(int slot,int argb) {
+			int sx = (slot%columns)*slotSize;
+			int sy = (slot/columns)*slotSize;
+			Graphics2D g = image.createGraphics();
+			try {
+				g.setComposite(AlphaComposite.Clear);
+				g.fillRect(sx, sy, slotSize, slotSize);
+				g.setComposite(AlphaComposite.SrcOver);
+				//anchor the checkerboard at the slot, not at the atlas
+				g.translate(sx, sy);
+				r.setBounds(0, 0, slotSize-1, slotSize-1);
+				paintSwatch(g, argb, r);
+			} finally {
+				g.dispose();
+			}
+		}
+	}
+}
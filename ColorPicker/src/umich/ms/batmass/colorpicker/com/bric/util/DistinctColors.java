@@ -0,0 +1,319 @@
+/*
+ * @(#)DistinctColors.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.util;
+
+import java.util.Arrays;
+
+/** Generates palettes of colors that are as easy as possible to tell apart,
+ * for example to color hundreds of overlaid series in a plot.
+ * <P>Colors are chosen from a fixed set of candidates spread evenly over sRGB.
+ * Distances are measured in CIE L*a*b*, where equal distances look roughly
+ * equally different.  Each new color is the candidate farthest from every color
+ * chosen so far, and from every color that is already in use ("farthest-point sampling").
+ * <P>The candidates are indexed by a uniform grid over L*a*b*.  After a color is
+ * chosen only the cells close enough to it to be affected are updated, so generating
+ * 1,000 colors takes milliseconds rather than comparing every pair of colors.
+ * <P>Colors are returned as opaque ints packed as 0xAARRGGBB, like <code>Color.getRGB()</code>.
+ * The results are deterministic: the same arguments always produce the same colors.
+ * <P>Instances are immutable, so they can be shared by several threads.
+ */
+public class DistinctColors {
+
+	/** The number of candidate levels per sRGB channel. */
+	private static final int LEVELS = 32;
+	/** The number of grid cells along each axis of L*a*b*. */
+	private static final int GRID = 8;
+
+	private static DistinctColors defaultInstance;
+
+	/** @return a generator that excludes the darkest and the lightest colors,
+	 * which are hard to see against dark or light backgrounds.
+	 */
+	public static synchronized DistinctColors getDefault() {
+		if(defaultInstance==null)
+			defaultInstance = new DistinctColors(20, 90);
+		return defaultInstance;
+	}
+
+	private final float minLightness, maxLightness;
+
+	/** The candidate colors, and their L*a*b* coordinates. */
+	private final int[] candidates;
+	private final float[] lab;
+
+	/** The grid: the candidates in cell <code>i</code> are <code>cellItems[cellStart[i]]</code>
+	 * through <code>cellItems[cellStart[i+1]-1]</code>.
+	 */
+	private final int[] cellStart, cellItems;
+	/** The bounds of each cell, as 6 floats per cell: minL, minA, minB, maxL, maxA, maxB. */
+	private final float[] cellBounds;
+
+	/** Creates a generator.
+	 *
+	 * @param minLightness the minimum L* value (between [0,100]) of generated colors.
+	 * @param maxLightness the maximum L* value (between [0,100]) of generated colors.
+	 */
+	public DistinctColors(float minLightness,float maxLightness) {
+		if(minLightness<0 || maxLightness>100 || minLightness>=maxLightness)
+			throw new IllegalArgumentException("the lightness range ["+minLightness+", "+maxLightness+"] must be a nonempty range within [0,100]");
+		this.minLightness = minLightness;
+		this.maxLightness = maxLightness;
+
+		float[] allLab = new float[3*LEVELS*LEVELS*LEVELS];
+		int[] allRGB = new int[LEVELS*LEVELS*LEVELS];
+		float[] tmp = new float[3];
+		int n = 0;
+		for(int r = 0; r<LEVELS; r++) {
+			for(int g = 0; g<LEVELS; g++) {
+				for(int b = 0; b<LEVELS; b++) {
+					int rgb = 0xff000000 | (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+					toLab(rgb, tmp);
+					if(tmp[0]<minLightness || tmp[0]>maxLightness)
+						continue;
+					allRGB[n] = rgb;
+					System.arraycopy(tmp, 0, allLab, 3*n, 3);
+					n++;
+				}
+			}
+		}
+		candidates = new int[n];
+		System.arraycopy(allRGB, 0, candidates, 0, n);
+		lab = new float[3*n];
+		System.arraycopy(allLab, 0, lab, 0, 3*n);
+
+		//L* is bounded by the lightness range; a* and b* fit comfortably in [-128,128]
+		float[] min = new float[] { minLightness, -128, -128 };
+		float[] size = new float[] { (maxLightness-minLightness)/GRID, 256f/GRID, 256f/GRID };
+		int cellCount = GRID*GRID*GRID;
+		int[] cellOf = new int[n];
+		cellStart = new int[cellCount+1];
+		for(int a = 0; a<n; a++) {
+			int cell = 0;
+			for(int axis = 0; axis<3; axis++) {
+				int k = (int)((lab[3*a+axis]-min[axis])/size[axis]);
+				cell = cell*GRID + Math.min(GRID-1, Math.max(0, k));
+			}
+			cellOf[a] = cell;
+			cellStart[cell+1]++;
+		}
+		for(int a = 1; a<cellStart.length; a++) {
+			cellStart[a] += cellStart[a-1];
+		}
+		cellItems = new int[n];
+		int[] fill = new int[cellCount];
+		for(int a = 0; a<n; a++) {
+			int cell = cellOf[a];
+			cellItems[cellStart[cell] + fill[cell]++] = a;
+		}
+
+		//use the actual extent of each cell's candidates, so distance bounds are tight
+		cellBounds = new float[6*cellCount];
+		for(int cell = 0; cell<cellCount; cell++) {
+			for(int axis = 0; axis<3; axis++) {
+				cellBounds[6*cell+axis] = Float.MAX_VALUE;
+				cellBounds[6*cell+3+axis] = -Float.MAX_VALUE;
+			}
+			for(int i = cellStart[cell]; i<cellStart[cell+1]; i++) {
+				int a = cellItems[i];
+				for(int axis = 0; axis<3; axis++) {
+					cellBounds[6*cell+axis] = Math.min(cellBounds[6*cell+axis], lab[3*a+axis]);
+					cellBounds[6*cell+3+axis] = Math.max(cellBounds[6*cell+3+axis], lab[3*a+axis]);
+				}
+			}
+		}
+	}
+
+	/** @return the minimum L* value of generated colors. */
+	public float getMinLightness() {
+		return minLightness;
+	}
+
+	/** @return the maximum L* value of generated colors. */
+	public float getMaxLightness() {
+		return maxLightness;
+	}
+
+	/** @return the number of different colors this generator can return. */
+	public int getCandidateCount() {
+		return candidates.length;
+	}
+
+	/** Generates colors that are as different as possible from each other.
+	 *
+	 * @param n the number of colors to generate.
+	 * @return <code>n</code> opaque colors packed as 0xAARRGGBB.
+	 */
+	public int[] generate(int n) {
+		return generate(n, null);
+	}
+
+	/** Generates colors that are as different as possible from each other,
+	 * and from colors that are already in use.
+	 *
+	 * @param n the number of colors to generate.
+	 * @param inUse colors packed as 0xAARRGGBB that the new colors should be different from.
+	 * Their alpha values are ignored.  This may be <code>null</code>.
+	 * @return <code>n</code> opaque colors packed as 0xAARRGGBB.
+	 */
+	public int[] generate(int n,int[] inUse) {
+		if(n<0 || n>candidates.length)
+			throw new IllegalArgumentException("n ("+n+") must be between [0, "+candidates.length+"]");
+		int[] dest = new int[n];
+		if(n==0)
+			return dest;
+
+		Search search = new Search();
+		float[] tmp = new float[3];
+		boolean seeded = inUse!=null && inUse.length>0;
+		if(seeded) {
+			for(int a = 0; a<inUse.length; a++) {
+				toLab(inUse[a], tmp);
+				search.add(tmp[0], tmp[1], tmp[2]);
+			}
+		}
+		for(int a = 0; a<n; a++) {
+			int k = (a==0 && !seeded) ? getMostSaturated() : search.getFarthest();
+			dest[a] = candidates[k];
+			search.add(lab[3*k], lab[3*k+1], lab[3*k+2]);
+		}
+		return dest;
+	}
+
+	/** Returns the color that is most different from all the colors in use.
+	 * This is the same as the first color <code>generate(1, inUse)</code> returns.
+	 *
+	 * @param inUse colors packed as 0xAARRGGBB.  This may be <code>null</code>.
+	 * @return an opaque color packed as 0xAARRGGBB.
+	 */
+	public int next(int[] inUse) {
+		return generate(1, inUse)[0];
+	}
+
+	/** @return the candidate with the highest chroma, used as the first color when nothing is in use. */
+	private int getMostSaturated() {
+		int best = 0;
+		float bestChroma = -1;
+		for(int a = 0; a<candidates.length; a++) {
+			float chroma = lab[3*a+1]*lab[3*a+1] + lab[3*a+2]*lab[3*a+2];
+			if(chroma>bestChroma) {
+				bestChroma = chroma;
+				best = a;
+			}
+		}
+		return best;
+	}
+
+	/** The state of one call to <code>generate()</code>. */
+	private class Search {
+		/** The squared distance from each candidate to the nearest color added so far. */
+		final float[] minDist = new float[candidates.length];
+		/** The largest value of <code>minDist</code> in each cell. */
+		final float[] cellMax = new float[cellStart.length-1];
+
+		Search() {
+			Arrays.fill(minDist, Float.MAX_VALUE);
+			Arrays.fill(cellMax, Float.MAX_VALUE);
+			for(int cell = 0; cell<cellMax.length; cell++) {
+				if(cellStart[cell]==cellStart[cell+1])
+					cellMax[cell] = -1;
+			}
+		}
+
+		/** Updates the distances to account for a new color. */
+		void add(float l,float a,float b) {
+			for(int cell = 0; cell<cellMax.length; cell++) {
+				//if even the nearest point of this cell is farther than every candidate's
+				//current distance, then nothing in this cell changes
+				if(cellMax[cell]<=getBoxDistance(cell, l, a, b))
+					continue;
+				float max = -1;
+				for(int i = cellStart[cell]; i<cellStart[cell+1]; i++) {
+					int k = cellItems[i];
+					float dl = lab[3*k]-l;
+					float da = lab[3*k+1]-a;
+					float db = lab[3*k+2]-b;
+					float d = dl*dl + da*da + db*db;
+					if(d<minDist[k])
+						minDist[k] = d;
+					if(minDist[k]>max)
+						max = minDist[k];
+				}
+				cellMax[cell] = max;
+			}
+		}
+
+		/** @return the squared distance from a point to the bounds of a cell. */
+		private float getBoxDistance(int cell,float l,float a,float b) {
+			float dl = getGap(l, cellBounds[6*cell], cellBounds[6*cell+3]);
+			float da = getGap(a, cellBounds[6*cell+1], cellBounds[6*cell+4]);
+			float db = getGap(b, cellBounds[6*cell+2], cellBounds[6*cell+5]);
+			return dl*dl + da*da + db*db;
+		}
+
+		/** @return the candidate farthest from every color added so far. */
+		int getFarthest() {
+			int bestCell = 0;
+			for(int cell = 1; cell<cellMax.length; cell++) {
+				if(cellMax[cell]>cellMax[bestCell])
+					bestCell = cell;
+			}
+			int best = -1;
+			for(int i = cellStart[bestCell]; i<cellStart[bestCell+1]; i++) {
+				int k = cellItems[i];
+				if(best==-1 || minDist[k]>minDist[best])
+					best = k;
+			}
+			return best;
+		}
+	}
+
+	private static float getGap(float v,float min,float max) {
+		if(v<min)
+			return min-v;
+		if(v>max)
+			return v-max;
+		return 0;
+	}
+
+	/** @return a candidate level as an sRGB channel value between [0,255]. */
+	private static int toByte(int level) {
+		return Math.round(level*255f/(LEVELS-1));
+	}
+
+	/** Converts an sRGB color to CIE L*a*b* (D65 white point).
+	 *
+	 * @param rgb a color packed as 0xAARRGGBB.  The alpha value is ignored.
+	 * @param dest an array of at least 3 elements, to store L*, a* and b*.
+	 * @return <code>dest</code>.
+	 */
+	public static float[] toLab(int rgb,float[] dest) {
+		double r = toLinear((rgb >> 16) & 0xff);
+		double g = toLinear((rgb >> 8) & 0xff);
+		double b = toLinear(rgb & 0xff);
+
+		double x = (0.4124564*r + 0.3575761*g + 0.1804375*b)/0.95047;
+		double y = (0.2126729*r + 0.7151522*g + 0.0721750*b);
+		double z = (0.0193339*r + 0.1191920*g + 0.9503041*b)/1.08883;
+
+		double fx = labF(x);
+		double fy = labF(y);
+		double fz = labF(z);
+		dest[0] = (float)(116*fy - 16);
+		dest[1] = (float)(500*(fx - fy));
+		dest[2] = (float)(200*(fy - fz));
+		return dest;
+	}
+
+	private static double toLinear(int v) {
+		double c = v/255.0;
+		return c<=0.04045 ? c/12.92 : Math.pow((c+0.055)/1.055, 2.4);
+	}
+
+	private static double labF(double t) {
+		return t>216.0/24389.0 ? Math.cbrt(t) : (24389.0/27.0*t + 16)/116;
+	}
+}
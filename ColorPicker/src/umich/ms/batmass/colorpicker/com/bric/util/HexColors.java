@@ -0,0 +1,479 @@
+/*
+ * @(#)HexColors.java
+ *
+ * This file is part of the BatMass ColorPicker module, which is based on
+ * the javagraphics ColorPicker by Jeremy Wood (https://javagraphics.java.net/).
+ */
+package umich.ms.batmass.colorpicker.com.bric.util;
+
+import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Static methods to convert colors packed as 0xAARRGGBB to and from hexadecimal text,
+ * one at a time or in bulk (for example to load or save large color tables).
+ * <P>Parsing is lenient, the same way the hex field of a <code>ColorPicker</code> is:
+ * characters that aren't hexadecimal digits are skipped, so "#ff8000", "FF 80 00"
+ * and "0xFF8000" all parse to the same color (a leading "0x" is ignored).
+ * If there are 8 or more digits the first 8 are read as AARRGGBB.  Otherwise the first 6 are read as RRGGBB (padded with zeros on
+ * the right if there are fewer than 6) and the color is opaque.
+ * <P>Because of that any text parses to some color.  To reject malformed entries (for example
+ * when importing a color table) use <code>isValid()</code> or <code>parseStrict()</code>, which
+ * only accept an optional "#" or "0x" prefix followed by exactly 6 or 8 hex digits.
+ * <P>Formatting writes uppercase digits, without a prefix, into a <code>char[]</code>
+ * the caller provides, so formatting a million colors doesn't create a million strings.
+ * <P>Colors can also be converted to and from hue, saturation and brightness in bulk, with the same
+ * math as <code>Color.RGBtoHSB()</code> and <code>Color.HSBtoRGB()</code>, 3 floats per color.
+ * <P>The parallel methods split large arrays across a shared <code>ForkJoinPool</code>.
+ * Arrays smaller than <code>PARALLEL_THRESHOLD</code> are converted on the calling thread.
+ */
+public final class HexColors {
+
+	private HexColors() {}
+
+	/** The number of colors below which the parallel methods don't split their work. */
+	public static final int PARALLEL_THRESHOLD = 8192;
+
+	private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/** The value of each ASCII character as a hex digit, or -1. */
+	private static final byte[] VALUES = new byte[128];
+	static {
+		for(int a = 0; a<VALUES.length; a++) {
+			VALUES[a] = -1;
+		}
+		for(int a = 0; a<16; a++) {
+			VALUES[DIGITS[a]] = (byte)a;
+			VALUES[Character.toLowerCase(DIGITS[a])] = (byte)a;
+		}
+	}
+
+	private static ForkJoinPool pool;
+
+	private static synchronized ForkJoinPool getPool() {
+		if(pool==null)
+			pool = new ForkJoinPool();
+		return pool;
+	}
+
+	/** @return the value of a hex digit, or -1 if <code>c</code> isn't one. */
+	public static int getDigitValue(char c) {
+		return c<128 ? VALUES[c] : -1;
+	}
+
+	/** Parses a color.
+	 *
+	 * @param s the text to parse.
+	 * @return the color packed as 0xAARRGGBB.
+	 */
+	public static int parse(CharSequence s) {
+		return parse(s, 0, s.length());
+	}
+
+	/** Parses a color from part of some text.
+	 *
+	 * @param s the text to parse.
+	 * @param start the index of the first character to read.
+	 * @param end the index after the last character to read.
+	 * @return the color packed as 0xAARRGGBB.
+	 */
+	public static int parse(CharSequence s,int start,int end) {
+		long v = 0;
+		int digits = 0;
+		for(int a = start; a<end && digits<8; a++) {
+			char c = s.charAt(a);
+			int d = c<128 ? VALUES[c] : -1;
+			if(d>=0) {
+				v = (v << 4) | d;
+				digits++;
+			} else if((c=='x' || c=='X') && digits==1 && v==0) {
+				digits = 0; //a "0x" prefix
+			}
+		}
+		return toARGB(v, digits);
+	}
+
+	/** Parses a color from part of a <code>char[]</code>.
+	 *
+	 * @param s the characters to parse.
+	 * @param start the index of the first character to read.
+	 * @param end the index after the last character to read.
+	 * @return the color packed as 0xAARRGGBB.
+	 */
+	public static int parse(char[] s,int start,int end) {
+		long v = 0;
+		int digits = 0;
+		for(int a = start; a<end && digits<8; a++) {
+			char c = s[a];
+			int d = c<128 ? VALUES[c] : -1;
+			if(d>=0) {
+				v = (v << 4) | d;
+				digits++;
+			} else if((c=='x' || c=='X') && digits==1 && v==0) {
+				digits = 0; //a "0x" prefix
+			}
+		}
+		return toARGB(v, digits);
+	}
+
+	/** Converts the first <code>digits</code> digits of a color to 0xAARRGGBB. */
+	private static int toARGB(long v,int digits) {
+		if(digits==8)
+			return (int)v;
+		if(digits>6) {
+			v = v >> (4*(digits-6));
+		} else {
+			v = v << (4*(6-digits));
+		}
+		return 0xff000000 | (int)v;
+	}
+
+	/** Returns whether some text is a well-formed color: an optional "#" or "0x"
+	 * prefix followed by exactly 6 (RRGGBB) or 8 (AARRGGBB) hex digits and nothing else.
+	 *
+	 * @param s the text to check.
+	 */
+	public static boolean isValid(CharSequence s) {
+		return isValid(s, 0, s.length());
+	}
+
+	/** Returns whether part of some text is a well-formed color.
+	 *
+	 * @param s the text to check.
+	 * @param start the index of the first character to check.
+	 * @param end the index after the last character to check.
+	 * @see #isValid(CharSequence)
+	 */
+	public static boolean isValid(CharSequence s,int start,int end) {
+		if(end-start>1 && s.charAt(start)=='#') {
+			start++;
+		} else if(end-start>2 && s.charAt(start)=='0' && (s.charAt(start+1)=='x' || s.charAt(start+1)=='X')) {
+			start += 2;
+		}
+		int digits = end-start;
+		if(digits!=6 && digits!=8)
+			return false;
+		for(int a = start; a<end; a++) {
+			char c = s.charAt(a);
+			if(c>=128 || VALUES[c]<0)
+				return false;
+		}
+		return true;
+	}
+
+	/** Parses several colors, rejecting the ones that aren't well-formed
+	 * according to <code>isValid()</code>.
+	 *
+	 * @param src the text of each color.
+	 * @param srcPos the index of the first color in <code>src</code>.
+	 * @param length the number of colors to parse.
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.
+	 * The element of a rejected color is left unchanged.
+	 * @param destPos the index in <code>dest</code> to store the first color at.
+	 * @param rejected the array in which to mark the rejected colors, at the same
+	 * indexes as in <code>dest</code>.  Accepted colors are set to false.
+	 * @return the number of colors rejected.
+	 */
+	public static int parseStrict(CharSequence[] src,int srcPos,int length,int[] dest,int destPos,boolean[] rejected) {
+		int count = 0;
+		for(int a = 0; a<length; a++) {
+			CharSequence s = src[srcPos+a];
+			boolean valid = s!=null && isValid(s, 0, s.length());
+			if(valid) {
+				dest[destPos+a] = parse(s, 0, s.length());
+			} else {
+				count++;
+			}
+			rejected[destPos+a] = !valid;
+		}
+		return count;
+	}
+
+	/** Parses several colors, rejecting the ones that aren't well-formed.
+	 *
+	 * @param src the text of each color.
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.
+	 * @param rejected the array in which to mark the rejected colors.
+	 * @return the number of colors rejected.
+	 * @see #parseStrict(CharSequence[], int, int, int[], int, boolean[])
+	 */
+	public static int parseStrict(CharSequence[] src,int[] dest,boolean[] rejected) {
+		return parseStrict(src, 0, src.length, dest, 0, rejected);
+	}
+
+	/** Parses several colors.
+	 *
+	 * @param src the text of each color.
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.
+	 * It must be at least as long as <code>src</code>.
+	 */
+	public static void parse(CharSequence[] src,int[] dest) {
+		parse(src, 0, src.length, dest, 0);
+	}
+
+	/** Parses several colors.
+	 *
+	 * @param src the text of each color.
+	 * @param srcPos the index of the first color in <code>src</code>.
+	 * @param length the number of colors to parse.
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.
+	 * @param destPos the index in <code>dest</code> to store the first color at.
+	 */
+	public static void parse(CharSequence[] src,int srcPos,int length,int[] dest,int destPos) {
+		for(int a = 0; a<length; a++) {
+			CharSequence s = src[srcPos+a];
+			dest[destPos+a] = parse(s, 0, s.length());
+		}
+	}
+
+	/** Parses colors stored back-to-back with the same number of characters each,
+	 * like the output of <code>format(int[], ...)</code>.
+	 *
+	 * @param src the characters to parse.
+	 * @param srcPos the index of the first character of the first color.
+	 * @param width the number of characters per color (including any separators).
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.
+	 * @param destPos the index in <code>dest</code> to store the first color at.
+	 * @param length the number of colors to parse.
+	 */
+	public static void parse(char[] src,int srcPos,int width,int[] dest,int destPos,int length) {
+		for(int a = 0; a<length; a++) {
+			int start = srcPos + a*width;
+			dest[destPos+a] = parse(src, start, start+width);
+		}
+	}
+
+	/** Formats a color.
+	 *
+	 * @param argb the color packed as 0xAARRGGBB.
+	 * @param includeAlpha whether to write 8 digits (AARRGGBB) or 6 (RRGGBB).
+	 * @param dest the array to write to.
+	 * @param offset the index in <code>dest</code> to write the first digit at.
+	 * @return the index in <code>dest</code> after the last digit written.
+	 */
+	public static int format(int argb,boolean includeAlpha,char[] dest,int offset) {
+		int shift = includeAlpha ? 28 : 20;
+		for(; shift>=0; shift -= 4) {
+			dest[offset++] = DIGITS[(argb >>> shift) & 0xf];
+		}
+		return offset;
+	}
+
+	/** Formats a color as a new string.
+	 *
+	 * @param argb the color packed as 0xAARRGGBB.
+	 * @param includeAlpha whether to write 8 digits (AARRGGBB) or 6 (RRGGBB).
+	 */
+	public static String toString(int argb,boolean includeAlpha) {
+		char[] c = new char[includeAlpha ? 8 : 6];
+		format(argb, includeAlpha, c, 0);
+		return new String(c);
+	}
+
+	/** Formats several colors back-to-back, 6 or 8 characters each.
+	 *
+	 * @param src the colors packed as 0xAARRGGBB.
+	 * @param srcPos the index of the first color in <code>src</code>.
+	 * @param length the number of colors to format.
+	 * @param includeAlpha whether to write 8 digits (AARRGGBB) or 6 (RRGGBB) per color.
+	 * @param dest the array to write to.  This needs <code>length*getWidth(includeAlpha)</code> characters.
+	 * @param destPos the index in <code>dest</code> to write the first digit at.
+	 * @return the index in <code>dest</code> after the last digit written.
+	 */
+	public static int format(int[] src,int srcPos,int length,boolean includeAlpha,char[] dest,int destPos) {
+		for(int a = 0; a<length; a++) {
+			destPos = format(src[srcPos+a], includeAlpha, dest, destPos);
+		}
+		return destPos;
+	}
+
+	/** @return the number of characters <code>format()</code> writes per color: 8 or 6. */
+	public static int getWidth(boolean includeAlpha) {
+		return includeAlpha ? 8 : 6;
+	}
+
+	/** Converts several colors to hue, saturation and brightness.  The alpha component is ignored.
+	 *
+	 * @param src the colors packed as 0xAARRGGBB.
+	 * @param srcPos the index of the first color in <code>src</code>.
+	 * @param length the number of colors to convert.
+	 * @param dest the array to store the hue, saturation and brightness of each color in,
+	 * 3 floats per color, each from 0 to 1.
+	 * @param destPos the index in <code>dest</code> to store the first hue at.
+	 */
+	public static void toHSB(int[] src,int srcPos,int length,float[] dest,int destPos) {
+		float[] hsb = new float[3];
+		for(int a = 0; a<length; a++) {
+			int argb = src[srcPos+a];
+			Color.RGBtoHSB((argb >> 16) & 0xff, (argb >> 8) & 0xff, argb & 0xff, hsb);
+			int d = destPos+3*a;
+			dest[d] = hsb[0];
+			dest[d+1] = hsb[1];
+			dest[d+2] = hsb[2];
+		}
+	}
+
+	/** Converts several colors from hue, saturation and brightness.  The colors are opaque.
+	 *
+	 * @param src the hue, saturation and brightness of each color, 3 floats per color.
+	 * @param srcPos the index of the first hue in <code>src</code>.
+	 * @param length the number of colors to convert.
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.
+	 * @param destPos the index in <code>dest</code> to store the first color at.
+	 */
+	public static void fromHSB(float[] src,int srcPos,int length,int[] dest,int destPos) {
+		for(int a = 0; a<length; a++) {
+			int s = srcPos+3*a;
+			dest[destPos+a] = Color.HSBtoRGB(src[s], src[s+1], src[s+2]);
+		}
+	}
+
+	/** Formats several colors back-to-back, splitting large arrays across several threads.
+	 * The result is the same as <code>format(int[], ...)</code>.
+	 *
+	 * @param src the colors packed as 0xAARRGGBB.
+	 * @param includeAlpha whether to write 8 digits (AARRGGBB) or 6 (RRGGBB) per color.
+	 * @param dest the array to write to.  This needs <code>src.length*getWidth(includeAlpha)</code> characters.
+	 */
+	public static void formatParallel(final int[] src,final boolean includeAlpha,final char[] dest) {
+		final int width = getWidth(includeAlpha);
+		if(dest.length<src.length*width)
+			throw new IllegalArgumentException("dest.length ("+dest.length+") must be at least "+(src.length*width));
+		run(src.length, new Chunk() {
+			public void convert(int start,int end) {
+				format(src, start, end-start, includeAlpha, dest, start*width);
+			}
+		});
+	}
+
+	/** Parses several colors, splitting large arrays across several threads.
+	 * The result is the same as <code>parse(CharSequence[], int[])</code>.
+	 *
+	 * @param src the text of each color.
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.
+	 */
+	public static void parseParallel(final CharSequence[] src,final int[] dest) {
+		if(dest.length<src.length)
+			throw new IllegalArgumentException("dest.length ("+dest.length+") must be at least "+src.length);
+		run(src.length, new Chunk() {
+			public void convert(int start,int end) {
+				parse(src, start, end-start, dest, start);
+			}
+		});
+	}
+
+	/** Parses colors stored back-to-back with the same number of characters each,
+	 * splitting large arrays across several threads.
+	 * The result is the same as <code>parse(char[], ...)</code>.
+	 *
+	 * @param src the characters to parse.
+	 * @param width the number of characters per color (including any separators).
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.  Its length is
+	 * the number of colors parsed.
+	 */
+	public static void parseParallel(final char[] src,final int width,final int[] dest) {
+		if(src.length<dest.length*width)
+			throw new IllegalArgumentException("src.length ("+src.length+") must be at least "+(dest.length*width));
+		run(dest.length, new Chunk() {
+			public void convert(int start,int end) {
+				parse(src, start*width, width, dest, start, end-start);
+			}
+		});
+	}
+
+	/** Parses several colors, rejecting the ones that aren't well-formed,
+	 * and splitting large arrays across several threads.
+	 * The result is the same as <code>parseStrict(CharSequence[], int[], boolean[])</code>.
+	 *
+	 * @param src the text of each color.
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.
+	 * @param rejected the array in which to mark the rejected colors.
+	 * @return the number of colors rejected.
+	 */
+	public static int parseStrictParallel(final CharSequence[] src,final int[] dest,final boolean[] rejected) {
+		if(dest.length<src.length || rejected.length<src.length)
+			throw new IllegalArgumentException("dest.length ("+dest.length+") and rejected.length ("+rejected.length+") must be at least "+src.length);
+		run(src.length, new Chunk() {
+			public void convert(int start,int end) {
+				parseStrict(src, start, end-start, dest, start, rejected);
+			}
+		});
+		int count = 0;
+		for(int a = 0; a<src.length; a++) {
+			if(rejected[a])
+				count++;
+		}
+		return count;
+	}
+
+	/** Converts several colors to hue, saturation and brightness, splitting large arrays
+	 * across several threads.  The result is the same as <code>toHSB(int[], ...)</code>.
+	 *
+	 * @param src the colors packed as 0xAARRGGBB.
+	 * @param dest the array to store the hue, saturation and brightness of each color in.
+	 * This needs <code>3*src.length</code> elements.
+	 */
+	public static void toHSBParallel(final int[] src,final float[] dest) {
+		if(dest.length<3*src.length)
+			throw new IllegalArgumentException("dest.length ("+dest.length+") must be at least "+(3*src.length));
+		run(src.length, new Chunk() {
+			public void convert(int start,int end) {
+				toHSB(src, start, end-start, dest, 3*start);
+			}
+		});
+	}
+
+	/** Converts several colors from hue, saturation and brightness, splitting large arrays
+	 * across several threads.  The result is the same as <code>fromHSB(float[], ...)</code>.
+	 *
+	 * @param src the hue, saturation and brightness of each color, 3 floats per color.
+	 * @param dest the array to store colors in, packed as 0xAARRGGBB.  Its length is
+	 * the number of colors converted.
+	 */
+	public static void fromHSBParallel(final float[] src,final int[] dest) {
+		if(src.length<3*dest.length)
+			throw new IllegalArgumentException("src.length ("+src.length+") must be at least "+(3*dest.length));
+		run(dest.length, new Chunk() {
+			public void convert(int start,int end) {
+				fromHSB(src, 3*start, end-start, dest, start);
+			}
+		});
+	}
+
+	/** Converts a range of colors. */
+	private static interface Chunk {
+		void convert(int start,int end);
+	}
+
+	private static void run(int length,Chunk chunk) {
+		if(length<PARALLEL_THRESHOLD) {
+			chunk.convert(0, length);
+		} else {
+			getPool().invoke(new ChunkAction(chunk, 0, length));
+		}
+	}
+
+	/** Splits a range in half until it is smaller than <code>PARALLEL_THRESHOLD</code>. */
+	private static class ChunkAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final Chunk chunk;
+		final int start, end;
+
+		ChunkAction(Chunk chunk,int start,int end) {
+			this.chunk = chunk;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if(end-start<PARALLEL_THRESHOLD) {
+				chunk.convert(start, end);
+			} else {
+				int middle = (start+end) >>> 1;
+				invokeAll(new ChunkAction(chunk, start, middle), new ChunkAction(chunk, middle, end));
+			}
+		}
+	}
+}
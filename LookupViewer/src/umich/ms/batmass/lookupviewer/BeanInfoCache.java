@@ -0,0 +1,69 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.awt.Image;
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import org.openide.util.Exceptions;
+
+/**
+ * The introspected properties and icon of classes, computed once per class
+ * when the first node of that class needs them.
+ * <p>
+ * The cache is a {@link ClassValue}, so each entry is stored with its class
+ * and is discarded when the class (and its class loader) is unloaded.
+ */
+final class BeanInfoCache {
+
+    private static final ClassValue<BeanInfoCache> CACHE = new ClassValue<BeanInfoCache>() {
+        @Override
+        protected BeanInfoCache computeValue(Class<?> type) {
+            return new BeanInfoCache(type);
+        }
+    };
+
+    private static final PropertyDescriptor[] NO_PROPERTIES = new PropertyDescriptor[0];
+
+    /**
+     * @return the information for a class
+     */
+    static BeanInfoCache get(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    private final PropertyDescriptor[] properties;
+    private final Image icon;
+
+    private BeanInfoCache(Class<?> type) {
+        PropertyDescriptor[] p = NO_PROPERTIES;
+        Image i = null;
+        try {
+            BeanInfo info = Introspector.getBeanInfo(type);
+            p = info.getPropertyDescriptors();
+            i = info.getIcon(BeanInfo.ICON_COLOR_16x16);
+        } catch (IntrospectionException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+        properties = p;
+        icon = i;
+    }
+
+    /**
+     * @return the properties of the class; the array must not be modified
+     */
+    PropertyDescriptor[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return the 16x16 color icon of the class's bean info, or {@code null}
+     */
+    Image getIcon() {
+        return icon;
+    }
+}
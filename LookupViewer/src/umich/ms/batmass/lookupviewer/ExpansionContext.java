@@ -0,0 +1,82 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openide.util.Lookup;
+
+/**
+ * The state shared by all nested lookups expanded in one viewer: the maximum
+ * depth, and a memo of the contents of every {@link Lookup.Provider} expanded
+ * so far. A provider that appears in several places of the tree is only
+ * queried once, and the keys created for its contents are shared. The memo is
+ * cleared whenever the top level of the viewer changes.
+ */
+final class ExpansionContext {
+
+    /** The default maximum depth of nested lookups; the top level is depth 0. */
+    static final int DEFAULT_MAX_DEPTH = 8;
+
+    private volatile int maxDepth = DEFAULT_MAX_DEPTH;
+    /** The contents of each provider, by provider; keys compare by identity. */
+    private final Map<InstanceKey, List<InstanceKey>> memo = new HashMap<InstanceKey, List<InstanceKey>>();
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maximum depth must be at least 1: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns the keys for the objects in a provider's lookup.
+     *
+     * @param providerKey the key of the provider
+     * @param provider the provider, which the caller holds while this runs
+     * @return the keys; the list must not be modified
+     */
+    List<InstanceKey> getContents(InstanceKey providerKey, Lookup.Provider provider) {
+        synchronized (memo) {
+            List<InstanceKey> contents = memo.get(providerKey);
+            if (contents != null) {
+                return contents;
+            }
+        }
+        // lookups may call foreign code, so don't hold the lock meanwhile
+        Collection<?> instances = provider.getLookup().lookupAll(Object.class);
+        List<InstanceKey> keys = new ArrayList<InstanceKey>(instances.size());
+        for (Object o : instances) {
+            keys.add(InstanceKey.create(o, providerKey.getMode(), null));
+        }
+        keys = Collections.unmodifiableList(keys);
+        synchronized (memo) {
+            List<InstanceKey> contents = memo.get(providerKey);
+            if (contents != null) {
+                return contents;
+            }
+            memo.put(providerKey, keys);
+            return keys;
+        }
+    }
+
+    /**
+     * Forgets the contents of all providers, including the keys of collected
+     * providers.
+     */
+    void clear() {
+        synchronized (memo) {
+            memo.clear();
+        }
+    }
+}
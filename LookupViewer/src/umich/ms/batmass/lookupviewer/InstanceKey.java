@@ -0,0 +1,195 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import org.openide.util.Utilities;
+import umich.ms.batmass.lookupviewer.LookupViewerChildFactory.ReferenceMode;
+
+/**
+ * A child key that wraps an object found in a lookup. Keys are equal only if
+ * they wrap the same instance, so {@link org.openide.nodes.Children.Keys}
+ * keeps the existing node (and its expanded subtree) for every object that is
+ * still in the lookup after a refresh, no matter how the object implements
+ * {@code equals()}.
+ * <p>
+ * Depending on its {@link ReferenceMode} a key holds its object strongly, or
+ * through a weak or soft reference. Once such an object has been collected
+ * {@link #get()} returns {@code null} and the key is only equal to itself.
+ * Keys with different modes are never equal.
+ */
+final class InstanceKey {
+
+    private final ReferenceMode mode;
+    /** The object, if it is held strongly. */
+    private final Object instance;
+    /** The reference to the object, if it isn't held strongly. */
+    private final Reference<Object> reference;
+    private final int hash;
+
+    private InstanceKey(Object instance, ReferenceMode mode, Runnable cleaner) {
+        this.mode = mode;
+        this.hash = System.identityHashCode(instance);
+        switch (mode) {
+            case WEAK:
+                this.instance = null;
+                this.reference = new CleanedWeakReference(instance, cleaner);
+                break;
+            case SOFT:
+                this.instance = null;
+                this.reference = new CleanedSoftReference(instance, cleaner);
+                break;
+            default:
+                this.instance = instance;
+                this.reference = null;
+        }
+    }
+
+    InstanceKey(Object instance) {
+        this(instance, ReferenceMode.STRONG, null);
+    }
+
+    /**
+     * Creates a key.
+     *
+     * @param instance the object to wrap
+     * @param mode how the key holds the object
+     * @param cleaner run (on the {@link Utilities#activeReferenceQueue() active
+     * reference queue}'s thread) after a weakly or softly held object was
+     * collected; may be {@code null}
+     */
+    static InstanceKey create(Object instance, ReferenceMode mode, Runnable cleaner) {
+        return new InstanceKey(instance, mode, cleaner);
+    }
+
+    /**
+     * @return the object, or {@code null} if it was collected
+     */
+    Object get() {
+        return reference == null ? instance : reference.get();
+    }
+
+    ReferenceMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof InstanceKey)) {
+            return false;
+        }
+        // keys with different modes differ, so changing the mode recreates the nodes
+        InstanceKey other = (InstanceKey) obj;
+        Object o = get();
+        return o != null && other.mode == mode && other.get() == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Compares the instances of a lookup with the keys created for its
+     * previous contents.
+     *
+     * @param old the keys created for the previous contents
+     * @param instances the current contents
+     * @param mode how new keys hold their objects; keys with another mode are
+     * not reused
+     * @param cleaner passed to new keys, see {@link #create}
+     * @return {@code old} itself if it wraps exactly the same instances in the
+     * same order; otherwise a new list that reuses the keys of the instances
+     * that are still present
+     */
+    static List<InstanceKey> diff(List<InstanceKey> old, Collection<?> instances, ReferenceMode mode, Runnable cleaner) {
+        if (old.size() == instances.size()) {
+            boolean same = true;
+            Iterator<?> it = instances.iterator();
+            for (int i = 0; same && i < old.size(); i++) {
+                InstanceKey key = old.get(i);
+                same = key.mode == mode && key.get() == it.next();
+            }
+            if (same) {
+                return old;
+            }
+        }
+        IdentityHashMap<Object, InstanceKey> previous = new IdentityHashMap<Object, InstanceKey>(old.size());
+        for (InstanceKey key : old) {
+            Object o = key.get();
+            if (o != null && key.mode == mode) {
+                previous.put(o, key);
+            }
+        }
+        List<InstanceKey> keys = new ArrayList<InstanceKey>(instances.size());
+        for (Object instance : instances) {
+            InstanceKey key = previous.get(instance);
+            keys.add(key != null ? key : create(instance, mode, cleaner));
+        }
+        return keys;
+    }
+
+    /**
+     * @return {@code keys} itself if none of its objects were collected,
+     * otherwise a new list without the keys of collected objects
+     */
+    static List<InstanceKey> prune(List<InstanceKey> keys) {
+        List<InstanceKey> live = null;
+        for (int i = 0; i < keys.size(); i++) {
+            InstanceKey key = keys.get(i);
+            if (key.get() == null) {
+                if (live == null) {
+                    live = new ArrayList<InstanceKey>(keys.subList(0, i));
+                }
+            } else if (live != null) {
+                live.add(key);
+            }
+        }
+        return live == null ? keys : live;
+    }
+
+    /* Utilities.activeReferenceQueue() runs references that implement
+     * Runnable once they are enqueued, so no thread of our own is needed. */
+
+    private static final class CleanedWeakReference extends WeakReference<Object> implements Runnable {
+
+        private final Runnable cleaner;
+
+        CleanedWeakReference(Object referent, Runnable cleaner) {
+            super(referent, cleaner == null ? null : Utilities.activeReferenceQueue());
+            this.cleaner = cleaner;
+        }
+
+        @Override
+        public void run() {
+            cleaner.run();
+        }
+    }
+
+    private static final class CleanedSoftReference extends SoftReference<Object> implements Runnable {
+
+        private final Runnable cleaner;
+
+        CleanedSoftReference(Object referent, Runnable cleaner) {
+            super(referent, cleaner == null ? null : Utilities.activeReferenceQueue());
+            this.cleaner = cleaner;
+        }
+
+        @Override
+        public void run() {
+            cleaner.run();
+        }
+    }
+}
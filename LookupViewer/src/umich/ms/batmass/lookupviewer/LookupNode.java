@@ -4,20 +4,265 @@
  */
 package umich.ms.batmass.lookupviewer;
 
+import java.awt.Image;
 import java.beans.IntrospectionException;
-import org.openide.nodes.BeanNode;
+import java.beans.PropertyEditor;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.NumberFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openide.nodes.AbstractNode;
 import org.openide.nodes.Children;
+import org.openide.nodes.Node;
+import org.openide.nodes.PropertySupport;
+import org.openide.nodes.Sheet;
+import org.openide.util.Exceptions;
+import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
 
 /**
+ * Displays an object found in a lookup. A node only knows the class name of
+ * its object until more is needed: the icon and the bean properties come from
+ * a per-class {@link BeanInfoCache}, and the property sheet is only built when
+ * it is first requested.
+ * <p>
+ * The node refers to its object only through an {@link InstanceKey}, and so do
+ * its properties, so a node holds the object as weakly as the key does.
+ * <p>
+ * The sheet also has estimates of the memory the object uses (see
+ * {@link ObjectSizes}). The retained size is computed on a background thread
+ * the first time it is read, and a property change is fired when it is known.
  *
  * @author Geertjan
  */
-public class LookupNode extends BeanNode<Object> {
+@NbBundle.Messages({
+    "LBL_Sizes=Memory",
+    "LBL_ShallowSize=Shallow Size",
+    "HINT_ShallowSize=The estimated size in bytes of the object itself",
+    "LBL_RetainedSize=Retained Size",
+    "HINT_RetainedSize=The estimated size in bytes of the objects reachable from this one, up to a limited depth",
+    "# {0} - size counted before the walk was cut short",
+    "LBL_RetainedSizeAtLeast=<html>&#8805; {0}"
+})
+public class LookupNode extends AbstractNode {
+
+    public static final String PROP_SHALLOW_SIZE = "shallowSize";
+    public static final String PROP_RETAINED_SIZE = "retainedSize";
+
+    /** The number of references followed to compute the retained size. */
+    static final int RETAINED_DEPTH = 16;
+    /** The time after which the walk for the retained size stops. */
+    static final long RETAINED_BUDGET_MS = 200;
+
+    private static final RequestProcessor SIZES = new RequestProcessor(LookupNode.class.getName(), 1);
+
+    private final InstanceKey key;
+    private final Class<?> type;
+    private final AtomicBoolean retainedRequested = new AtomicBoolean();
+    private volatile ObjectSizes.Estimate retained;
 
     public LookupNode(Object bean, Children kids) throws IntrospectionException {
-        super(bean);
-        setDisplayName(bean.getClass().getCanonicalName());
-        setChildren(kids);
+        this(new InstanceKey(bean), kids);
+    }
+
+    LookupNode(InstanceKey key, Children kids) {
+        super(kids);
+        this.key = key;
+        Object bean = key.get();
+        type = bean == null ? Object.class : bean.getClass();
+        setDisplayName(type.getCanonicalName() != null ? type.getCanonicalName() : type.getName());
+    }
+
+    /**
+     * @return the object this node displays, or {@code null} if it was
+     * collected
+     */
+    public Object getBean() {
+        return key.get();
+    }
+
+    InstanceKey getKey() {
+        return key;
+    }
+
+    @Override
+    public Image getIcon(int iconType) {
+        Image icon = BeanInfoCache.get(type).getIcon();
+        return icon != null ? icon : super.getIcon(iconType);
+    }
+
+    @Override
+    public Image getOpenedIcon(int iconType) {
+        return getIcon(iconType);
+    }
+
+    @Override
+    protected Sheet createSheet() {
+        Sheet sheet = Sheet.createDefault();
+        Sheet.Set normal = sheet.get(Sheet.PROPERTIES);
+        Sheet.Set expert = null;
+        for (PropertyDescriptor d : BeanInfoCache.get(type).getProperties()) {
+            if (d.isHidden() || d.getPropertyType() == null) {
+                continue;
+            }
+            if (d.isExpert()) {
+                if (expert == null) {
+                    expert = Sheet.createExpertSet();
+                    sheet.put(expert);
+                }
+                expert.put(new BeanProperty(key, d));
+            } else {
+                normal.put(new BeanProperty(key, d));
+            }
+        }
+        Sheet.Set sizes = new Sheet.Set();
+        sizes.setName("sizes");
+        sizes.setDisplayName(Bundle.LBL_Sizes());
+        sizes.put(new ShallowSizeProperty());
+        sizes.put(new RetainedSizeProperty());
+        sheet.put(sizes);
+        return sheet;
+    }
+
+    /**
+     * Starts computing the retained size, unless it was already started.
+     */
+    private void requestRetainedSize() {
+        if (!retainedRequested.compareAndSet(false, true)) {
+            return;
+        }
+        SIZES.post(new Runnable() {
+            @Override
+            public void run() {
+                Object bean = key.get();
+                if (bean == null) {
+                    return;
+                }
+                retained = ObjectSizes.retainedSize(bean, RETAINED_DEPTH,
+                        TimeUnit.MILLISECONDS.toNanos(RETAINED_BUDGET_MS));
+                firePropertyChange(PROP_RETAINED_SIZE, null, retained.size);
+            }
+        });
+    }
+
+    private class ShallowSizeProperty extends PropertySupport.ReadOnly<Long> {
+
+        ShallowSizeProperty() {
+            super(PROP_SHALLOW_SIZE, Long.class, Bundle.LBL_ShallowSize(), Bundle.HINT_ShallowSize());
+        }
+
+        @Override
+        public Long getValue() {
+            Object bean = key.get();
+            return bean == null ? null : ObjectSizes.shallowSize(bean);
+        }
+    }
+
+    /**
+     * The retained size, or {@code null} until it was computed. A size from a
+     * walk that was cut short is shown as a lower bound.
+     */
+    private class RetainedSizeProperty extends PropertySupport.ReadOnly<Long> {
+
+        RetainedSizeProperty() {
+            super(PROP_RETAINED_SIZE, Long.class, Bundle.LBL_RetainedSize(), Bundle.HINT_RetainedSize());
+        }
+
+        @Override
+        public Long getValue() {
+            ObjectSizes.Estimate estimate = retained;
+            if (estimate == null) {
+                requestRetainedSize();
+                return null;
+            }
+            setValue("htmlDisplayValue", estimate.complete ? null
+                    : Bundle.LBL_RetainedSizeAtLeast(NumberFormat.getIntegerInstance().format(estimate.size)));
+            return estimate.size;
+        }
+    }
+
+    /**
+     * A bean property that looks up its bean each time it is read or written,
+     * instead of holding it. Otherwise it works like
+     * {@link PropertySupport.Reflection}: inaccessible accessors (of private or
+     * anonymous classes) are made accessible, and the property editor of the
+     * descriptor is used.
+     */
+    private static class BeanProperty extends Node.Property<Object> {
+
+        private final InstanceKey key;
+        private final Method readMethod;
+        private final Method writeMethod;
+        private final Class<?> editorClass;
+
+        @SuppressWarnings("unchecked")
+        BeanProperty(InstanceKey key, PropertyDescriptor d) {
+            // primitive types are kept, as in PropertySupport.Reflection, so their property editors are found
+            super((Class<Object>) d.getPropertyType());
+            this.key = key;
+            this.readMethod = d.getReadMethod();
+            this.writeMethod = d.getWriteMethod();
+            this.editorClass = d.getPropertyEditorClass();
+            setName(d.getName());
+            setDisplayName(d.getDisplayName());
+            setShortDescription(d.getShortDescription());
+        }
+
+        @Override
+        public boolean canRead() {
+            return readMethod != null;
+        }
+
+        @Override
+        public Object getValue() throws IllegalAccessException, InvocationTargetException {
+            Object bean = key.get();
+            if (bean == null || readMethod == null) {
+                return null;
+            }
+            return invoke(readMethod, bean);
+        }
+
+        @Override
+        public boolean canWrite() {
+            return writeMethod != null && key.get() != null;
+        }
+
+        @Override
+        public void setValue(Object value) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+            Object bean = key.get();
+            if (bean == null || writeMethod == null) {
+                throw new IllegalAccessException(getName() + " can't be written");
+            }
+            invoke(writeMethod, bean, value);
+        }
+
+        private static Object invoke(Method m, Object bean, Object... args) throws IllegalAccessException, InvocationTargetException {
+            try {
+                return m.invoke(bean, args);
+            } catch (IllegalAccessException ex) {
+                try {
+                    m.setAccessible(true);
+                } catch (RuntimeException ex2) {
+                    throw ex;
+                }
+                return m.invoke(bean, args);
+            }
+        }
+
+        @Override
+        public PropertyEditor getPropertyEditor() {
+            if (editorClass != null) {
+                try {
+                    return (PropertyEditor) editorClass.newInstance();
+                } catch (InstantiationException ex) {
+                    Exceptions.printStackTrace(ex);
+                } catch (IllegalAccessException ex) {
+                    Exceptions.printStackTrace(ex);
+                }
+            }
+            return super.getPropertyEditor();
+        }
     }
-    
 }
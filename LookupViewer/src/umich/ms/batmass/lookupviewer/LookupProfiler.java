@@ -0,0 +1,427 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openide.util.Lookup;
+import org.openide.util.LookupEvent;
+import org.openide.util.LookupListener;
+import org.openide.util.RequestProcessor;
+import org.openide.util.Utilities;
+
+/**
+ * Measures the traffic of the global context: how many change events it
+ * fires, how long its listeners take per listener class, and how many
+ * instances of each type it contains over time.
+ * <p>
+ * A lookup doesn't expose its listeners, so the results of the global context
+ * are wrapped instead: {@link ProfilingContextGlobalProvider} provides the
+ * context of {@code Utilities.actionsGlobalContext()}, and every result of it
+ * times its listeners. Other results can be wrapped with
+ * {@link #profile(Lookup.Result)}. A wrapped result behaves exactly like the
+ * result it wraps; while the profiler is stopped it only adds a volatile read
+ * per event.
+ * <p>
+ * All counters are atomic, so recording never blocks the thread that fires an
+ * event. Instance counts are sampled once a second on a background thread,
+ * never on the thread that changed the context.
+ */
+public final class LookupProfiler {
+
+    /** The number of one-second samples kept per type. */
+    public static final int HISTORY = 60;
+
+    private static final LookupProfiler DEFAULT = new LookupProfiler();
+
+    private static final RequestProcessor RP = new RequestProcessor(LookupProfiler.class.getName(), 1);
+
+    public static LookupProfiler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Wraps a result so the time its listeners take is recorded in the
+     * default profiler.
+     */
+    public static <T> Lookup.Result<T> profile(Lookup.Result<T> result) {
+        return new ProfiledResult<T>(result, DEFAULT);
+    }
+
+    /**
+     * The calls to the listeners of one class.
+     */
+    public static final class ListenerStats {
+
+        private final String listenerClass;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong nanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        ListenerStats(String listenerClass) {
+            this.listenerClass = listenerClass;
+        }
+
+        void record(long time) {
+            calls.incrementAndGet();
+            nanos.addAndGet(time);
+            long max;
+            while (time > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, time)) {
+                // retry
+            }
+        }
+
+        public String getListenerClass() {
+            return listenerClass;
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getTotalNanos() {
+            return nanos.get();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+
+    /**
+     * The number of instances of one type in the global context, sampled once
+     * a second.
+     */
+    public static final class TypeStats {
+
+        private final String type;
+        /** The last HISTORY samples; sample i is at i % HISTORY. */
+        private final int[] history = new int[HISTORY];
+        private volatile long samples;
+        private volatile int max;
+
+        TypeStats(String type) {
+            this.type = type;
+        }
+
+        /** Only called on the sampling thread. */
+        void record(long sample, int count) {
+            history[(int) (sample % HISTORY)] = count;
+            samples = sample + 1;
+            if (count > max) {
+                max = count;
+            }
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the number of instances in the latest sample
+         */
+        public int getCurrent() {
+            long n = samples;
+            return n == 0 ? 0 : history[(int) ((n - 1) % HISTORY)];
+        }
+
+        /**
+         * @return the largest number of instances in any sample
+         */
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * @return the latest samples (at most {@link #HISTORY}), oldest first
+         */
+        public int[] getHistory() {
+            long n = samples;
+            int length = (int) Math.min(n, HISTORY);
+            int[] h = new int[length];
+            for (int i = 0; i < length; i++) {
+                h[i] = history[(int) ((n - length + i) % HISTORY)];
+            }
+            return h;
+        }
+    }
+
+    private volatile boolean running;
+    private final AtomicLong events = new AtomicLong();
+    private volatile long startNanos;
+    private volatile long eventsPerSecond;
+    private long lastEvents;
+    private long sample;
+    private final ConcurrentMap<Class<?>, ListenerStats> listeners = new ConcurrentHashMap<Class<?>, ListenerStats>();
+    /** Only modified on the sampling thread. */
+    private final ConcurrentMap<String, TypeStats> types = new ConcurrentHashMap<String, TypeStats>();
+    private Lookup.Result<Object> globalResult;
+
+    private final LookupListener eventCounter = new LookupListener() {
+        @Override
+        public void resultChanged(LookupEvent ev) {
+            events.incrementAndGet();
+        }
+    };
+
+    private final RequestProcessor.Task sampler = RP.create(new Runnable() {
+        @Override
+        public void run() {
+            if (running) {
+                sample();
+                sampler.schedule(1000);
+            }
+        }
+    });
+
+    private LookupProfiler() {
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startNanos = System.nanoTime();
+        globalResult = Utilities.actionsGlobalContext().lookupResult(Object.class);
+        globalResult.addLookupListener(eventCounter);
+        sampler.schedule(0);
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        globalResult.removeLookupListener(eventCounter);
+        globalResult = null;
+        sampler.cancel();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Clears all statistics.
+     */
+    public void reset() {
+        RP.post(new Runnable() {
+            @Override
+            public void run() {
+                events.set(0);
+                lastEvents = 0;
+                eventsPerSecond = 0;
+                sample = 0;
+                startNanos = System.nanoTime();
+                listeners.clear();
+                types.clear();
+            }
+        });
+    }
+
+    /**
+     * @return the number of change events of the global context since the
+     * profiler was started or reset
+     */
+    public long getEventCount() {
+        return events.get();
+    }
+
+    /**
+     * @return the number of change events in the last second
+     */
+    public long getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /**
+     * @return the time since the profiler was started or reset, in seconds
+     */
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    public List<ListenerStats> getListenerStats() {
+        return new ArrayList<ListenerStats>(listeners.values());
+    }
+
+    public List<TypeStats> getTypeStats() {
+        return new ArrayList<TypeStats>(types.values());
+    }
+
+    boolean isRecording() {
+        return running;
+    }
+
+    void recordListener(Class<?> listenerClass, long nanos) {
+        ListenerStats stats = listeners.get(listenerClass);
+        if (stats == null) {
+            ListenerStats s = new ListenerStats(listenerClass.getName());
+            stats = listeners.putIfAbsent(listenerClass, s);
+            if (stats == null) {
+                stats = s;
+            }
+        }
+        stats.record(nanos);
+    }
+
+    private void sample() {
+        long e = events.get();
+        eventsPerSecond = e - lastEvents;
+        lastEvents = e;
+
+        Lookup.Result<Object> result = globalResult;
+        if (result == null) {
+            return;
+        }
+        Map<String, int[]> counts = new HashMap<String, int[]>();
+        for (Object o : result.allInstances()) {
+            String name = o.getClass().getName();
+            int[] c = counts.get(name);
+            if (c == null) {
+                counts.put(name, new int[]{1});
+            } else {
+                c[0]++;
+            }
+        }
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            TypeStats stats = types.get(entry.getKey());
+            if (stats == null) {
+                stats = new TypeStats(entry.getKey());
+                types.put(entry.getKey(), stats);
+            }
+        }
+        // types that are gone are recorded as 0
+        for (TypeStats stats : types.values()) {
+            int[] c = counts.get(stats.getType());
+            stats.record(sample, c == null ? 0 : c[0]);
+        }
+        sample++;
+    }
+
+    /**
+     * Writes all statistics as comma-separated values: a section for the
+     * listeners, then one for the types with their sample history.
+     */
+    public void exportCSV(Writer w) throws IOException {
+        w.write("listener,calls,total ms,mean us,max us\n");
+        for (ListenerStats s : getListenerStats()) {
+            long calls = s.getCalls();
+            w.write(csv(s.getListenerClass()) + "," + calls + ","
+                    + (s.getTotalNanos() / 1e6) + ","
+                    + (calls == 0 ? 0 : s.getTotalNanos() / 1e3 / calls) + ","
+                    + (s.getMaxNanos() / 1e3) + "\n");
+        }
+        w.write("\n");
+        w.write("type,current,max,history (oldest first)\n");
+        for (TypeStats s : getTypeStats()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(csv(s.getType())).append(',').append(s.getCurrent()).append(',').append(s.getMax());
+            for (int count : s.getHistory()) {
+                sb.append(',').append(count);
+            }
+            w.write(sb.append('\n').toString());
+        }
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * A result that times its listeners. Its listeners receive events whose
+     * source is this result, as if they were fired by it.
+     */
+    private static final class ProfiledResult<T> extends Lookup.Result<T> {
+
+        private final Lookup.Result<T> delegate;
+        private final LookupProfiler profiler;
+        /**
+         * The wrappers of each listener, so they can be removed; a listener
+         * added twice has two, and is removed one at a time like in the
+         * delegate.
+         */
+        private final Map<LookupListener, List<LookupListener>> wrappers = new IdentityHashMap<LookupListener, List<LookupListener>>();
+
+        ProfiledResult(Lookup.Result<T> delegate, LookupProfiler profiler) {
+            this.delegate = delegate;
+            this.profiler = profiler;
+        }
+
+        @Override
+        public void addLookupListener(final LookupListener l) {
+            LookupListener wrapper = new LookupListener() {
+                @Override
+                public void resultChanged(LookupEvent ev) {
+                    LookupEvent event = new LookupEvent(ProfiledResult.this);
+                    if (!profiler.isRecording()) {
+                        l.resultChanged(event);
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        l.resultChanged(event);
+                    } finally {
+                        profiler.recordListener(l.getClass(), System.nanoTime() - start);
+                    }
+                }
+            };
+            synchronized (wrappers) {
+                List<LookupListener> list = wrappers.get(l);
+                if (list == null) {
+                    list = new ArrayList<LookupListener>(1);
+                    wrappers.put(l, list);
+                }
+                list.add(wrapper);
+            }
+            delegate.addLookupListener(wrapper);
+        }
+
+        @Override
+        public void removeLookupListener(LookupListener l) {
+            LookupListener wrapper;
+            synchronized (wrappers) {
+                List<LookupListener> list = wrappers.get(l);
+                if (list == null) {
+                    return;
+                }
+                wrapper = list.remove(list.size() - 1);
+                if (list.isEmpty()) {
+                    wrappers.remove(l);
+                }
+            }
+            delegate.removeLookupListener(wrapper);
+        }
+
+        @Override
+        public Collection<? extends T> allInstances() {
+            return delegate.allInstances();
+        }
+
+        @Override
+        public Set<Class<? extends T>> allClasses() {
+            return delegate.allClasses();
+        }
+
+        @Override
+        public Collection<? extends Lookup.Item<T>> allItems() {
+            return delegate.allItems();
+        }
+    }
+}
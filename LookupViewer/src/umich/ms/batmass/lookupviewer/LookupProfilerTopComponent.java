@@ -0,0 +1,261 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.JToggleButton;
+import javax.swing.JToolBar;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import org.openide.awt.ActionID;
+import org.openide.awt.ActionReference;
+import org.openide.util.Exceptions;
+import org.openide.util.NbBundle;
+import org.openide.windows.TopComponent;
+
+/**
+ * Shows the statistics of the {@link LookupProfiler} in two tables, refreshed
+ * once a second while the window is open.
+ */
+@TopComponent.Description(preferredID = "LookupProfilerTopComponent",
+persistenceType = TopComponent.PERSISTENCE_NEVER)
+@TopComponent.Registration(mode = "output", openAtStartup = false)
+@ActionID(category = "Window", id = "org.netbeans.lookup.viewer.LookupProfilerTopComponent")
+@ActionReference(path = "Menu/Window")
+@TopComponent.OpenActionRegistration(
+    displayName = "#CTL_LookupProfilerAction",
+preferredID = "LookupProfilerTopComponent")
+@NbBundle.Messages({
+    "CTL_LookupProfilerAction=Lookup Profiler",
+    "CTL_LookupProfilerTopComponent=Lookup Profiler",
+    "HINT_LookupProfilerTopComponent=Change events, listener times and instance counts of the global context",
+    "LBL_Record=Record",
+    "LBL_Reset=Reset",
+    "LBL_ExportCSV=Export CSV...",
+    "# {0} - number of events",
+    "# {1} - events in the last second",
+    "# {2} - seconds recorded",
+    "LBL_EventSummary={0} events, {1} per second, {2} s",
+    "LBL_Listeners=Listeners",
+    "LBL_Types=Types",
+    "COL_Listener=Listener",
+    "COL_Calls=Calls",
+    "COL_TotalMs=Total (ms)",
+    "COL_MeanUs=Mean (us)",
+    "COL_MaxUs=Max (us)",
+    "COL_Type=Type",
+    "COL_Current=Instances",
+    "COL_Max=Max Instances"
+})
+public class LookupProfilerTopComponent extends TopComponent {
+
+    private final LookupProfiler profiler = LookupProfiler.getDefault();
+    private final ListenerTableModel listenerModel = new ListenerTableModel();
+    private final TypeTableModel typeModel = new TypeTableModel();
+    private final JLabel summary = new JLabel();
+    private final Timer refreshTimer = new Timer(1000, new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            refresh();
+        }
+    });
+
+    public LookupProfilerTopComponent() {
+        setName(Bundle.CTL_LookupProfilerTopComponent());
+        setToolTipText(Bundle.HINT_LookupProfilerTopComponent());
+        setLayout(new BorderLayout());
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab(Bundle.LBL_Listeners(), new JScrollPane(createTable(listenerModel)));
+        tabs.addTab(Bundle.LBL_Types(), new JScrollPane(createTable(typeModel)));
+        add(createToolBar(), BorderLayout.NORTH);
+        add(tabs, BorderLayout.CENTER);
+    }
+
+    private static JTable createTable(AbstractTableModel model) {
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        table.setFillsViewportHeight(true);
+        return table;
+    }
+
+    private JToolBar createToolBar() {
+        JToolBar toolBar = new JToolBar();
+        toolBar.setFloatable(false);
+        final JToggleButton recordButton = new JToggleButton(Bundle.LBL_Record());
+        recordButton.setSelected(profiler.isRunning());
+        recordButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (recordButton.isSelected()) {
+                    profiler.start();
+                } else {
+                    profiler.stop();
+                }
+            }
+        });
+        toolBar.add(recordButton);
+        JButton resetButton = new JButton(Bundle.LBL_Reset());
+        resetButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                profiler.reset();
+            }
+        });
+        toolBar.add(resetButton);
+        JButton exportButton = new JButton(Bundle.LBL_ExportCSV());
+        exportButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                exportCSV();
+            }
+        });
+        toolBar.add(exportButton);
+        toolBar.addSeparator();
+        toolBar.add(summary);
+        return toolBar;
+    }
+
+    private void refresh() {
+        summary.setText(Bundle.LBL_EventSummary(profiler.getEventCount(),
+                profiler.getEventsPerSecond(), Math.round(profiler.getElapsedSeconds())));
+        listenerModel.setRows(profiler.getListenerStats());
+        typeModel.setRows(profiler.getTypeStats());
+    }
+
+    private void exportCSV() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("lookup-profile.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(chooser.getSelectedFile()), "UTF-8")) {
+            profiler.exportCSV(w);
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+    }
+
+    @Override
+    protected void componentOpened() {
+        refresh();
+        refreshTimer.start();
+    }
+
+    @Override
+    protected void componentClosed() {
+        refreshTimer.stop();
+    }
+
+    private static class ListenerTableModel extends AbstractTableModel {
+
+        private List<LookupProfiler.ListenerStats> rows = Collections.emptyList();
+
+        void setRows(List<LookupProfiler.ListenerStats> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 5;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            switch (column) {
+                case 0: return Bundle.COL_Listener();
+                case 1: return Bundle.COL_Calls();
+                case 2: return Bundle.COL_TotalMs();
+                case 3: return Bundle.COL_MeanUs();
+                default: return Bundle.COL_MaxUs();
+            }
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            switch (column) {
+                case 0: return String.class;
+                case 1: return Long.class;
+                default: return Double.class;
+            }
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            LookupProfiler.ListenerStats s = rows.get(row);
+            switch (column) {
+                case 0: return s.getListenerClass();
+                case 1: return s.getCalls();
+                case 2: return s.getTotalNanos() / 1e6;
+                case 3: return s.getCalls() == 0 ? 0.0 : s.getTotalNanos() / 1e3 / s.getCalls();
+                default: return s.getMaxNanos() / 1e3;
+            }
+        }
+    }
+
+    private static class TypeTableModel extends AbstractTableModel {
+
+        private List<LookupProfiler.TypeStats> rows = Collections.emptyList();
+
+        void setRows(List<LookupProfiler.TypeStats> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 3;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            switch (column) {
+                case 0: return Bundle.COL_Type();
+                case 1: return Bundle.COL_Current();
+                default: return Bundle.COL_Max();
+            }
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Integer.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            LookupProfiler.TypeStats s = rows.get(row);
+            switch (column) {
+                case 0: return s.getType();
+                case 1: return s.getCurrent();
+                default: return s.getMax();
+            }
+        }
+    }
+}
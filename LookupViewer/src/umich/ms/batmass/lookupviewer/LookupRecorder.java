@@ -0,0 +1,254 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.openide.util.Lookup;
+import org.openide.util.LookupEvent;
+import org.openide.util.LookupListener;
+import org.openide.util.Utilities;
+
+/**
+ * A flight recorder for the global context: every change is written to a
+ * fixed-size ring buffer outside the heap, so the recorder can stay on for a
+ * whole session and only the latest changes are kept.
+ * <p>
+ * Each change event writes one record with its time and the number of objects
+ * in the context, followed by a record for every object added or removed,
+ * identified by its type and identity hash. Types are interned into small ids
+ * the first time they are seen. Apart from that and what the lookup itself
+ * allocates, recording an event allocates nothing: the diff against the
+ * previous contents uses arrays that are reused from event to event.
+ * <p>
+ * {@link #capture()} copies the buffer into a {@link LookupRecording}, which
+ * can reconstruct the contents of the context after any recorded event.
+ */
+public final class LookupRecorder {
+
+    /** The default number of records; a record takes {@value #RECORD_SIZE} bytes. */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    static final int RECORD_SIZE = 24;
+    static final int OP_EVENT = 0;
+    static final int OP_ADDED = 1;
+    static final int OP_REMOVED = 2;
+
+    private static final LookupRecorder DEFAULT = new LookupRecorder(
+            Integer.getInteger("umich.ms.batmass.lookupviewer.recorder.capacity", DEFAULT_CAPACITY));
+
+    /**
+     * @return the recorder of the lookup viewer; its capacity can be set with
+     * the system property
+     * {@code umich.ms.batmass.lookupviewer.recorder.capacity}
+     */
+    public static LookupRecorder getDefault() {
+        return DEFAULT;
+    }
+
+    private final int capacity;
+    private final ByteBuffer buffer;
+    /** The number of records written so far; the next goes to written % capacity. */
+    private long written;
+    private long events;
+
+    private final List<String> typeNames = new ArrayList<String>();
+    private final ClassValue<Integer> typeIds = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            // only called while the recorder is locked
+            typeNames.add(type.getName());
+            return typeNames.size() - 1;
+        }
+    };
+
+    /** The objects in the context after the last event. */
+    private Object[] state = new Object[16];
+    private int stateCount;
+    /** The objects of the event being recorded; swapped with state afterwards. */
+    private Object[] next = new Object[16];
+    /** An identity hash table of the indexes in state, used for the diff. */
+    private Object[] table = new Object[32];
+    private int[] tableIndex = new int[32];
+    private boolean[] kept = new boolean[16];
+
+    private Lookup.Result<Object> result;
+    private final LookupListener listener = new LookupListener() {
+        @Override
+        public void resultChanged(LookupEvent ev) {
+            record();
+        }
+    };
+
+    public LookupRecorder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+    }
+
+    /**
+     * Starts recording, with an event for the current contents.
+     */
+    public synchronized void start() {
+        if (result != null) {
+            return;
+        }
+        result = Utilities.actionsGlobalContext().lookupResult(Object.class);
+        result.addLookupListener(listener);
+        record();
+    }
+
+    /**
+     * Stops recording, with an event that removes all objects, so the
+     * recorder doesn't hold on to them.
+     */
+    public synchronized void stop() {
+        if (result == null) {
+            return;
+        }
+        result.removeLookupListener(listener);
+        result = null;
+        diff(0);
+    }
+
+    public synchronized boolean isRecording() {
+        return result != null;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private synchronized void record() {
+        if (result == null) {
+            return;
+        }
+        int count = 0;
+        for (Object o : result.allInstances()) {
+            if (count == next.length) {
+                next = Arrays.copyOf(next, count * 2);
+            }
+            next[count++] = o;
+        }
+        diff(count);
+    }
+
+    /**
+     * Writes the records for the change from state to the first count objects
+     * of next, then makes them the new state.
+     */
+    private void diff(int count) {
+        long seq = events++;
+        long time = System.currentTimeMillis();
+        write(time, seq, OP_EVENT, count, 0);
+
+        int mask = index(stateCount);
+        for (int i = 0; i < stateCount; i++) {
+            int slot = System.identityHashCode(state[i]) & mask;
+            while (table[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = state[i];
+            tableIndex[slot] = i;
+        }
+        for (int i = 0; i < count; i++) {
+            Object o = next[i];
+            int hash = System.identityHashCode(o);
+            int slot = hash & mask;
+            int found = -1;
+            while (table[slot] != null) {
+                if (table[slot] == o && !kept[tableIndex[slot]]) {
+                    found = tableIndex[slot];
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (found >= 0) {
+                kept[found] = true;
+            } else {
+                write(time, seq, OP_ADDED, typeIds.get(o.getClass()), hash);
+            }
+        }
+        for (int i = 0; i < stateCount; i++) {
+            if (kept[i]) {
+                kept[i] = false;
+            } else {
+                Object o = state[i];
+                write(time, seq, OP_REMOVED, typeIds.get(o.getClass()), System.identityHashCode(o));
+            }
+        }
+        Arrays.fill(table, 0, mask + 1, null);
+
+        Object[] old = state;
+        state = next;
+        next = old;
+        Arrays.fill(next, 0, stateCount, null);
+        stateCount = count;
+    }
+
+    /**
+     * Makes sure the hash table can hold the given number of objects at a
+     * load factor of at most 1/2.
+     *
+     * @return the mask of the part of the table to use
+     */
+    private int index(int count) {
+        int size = 32;
+        while (size < count * 2) {
+            size <<= 1;
+        }
+        if (size > table.length) {
+            table = new Object[size];
+            tableIndex = new int[size];
+        }
+        if (count > kept.length) {
+            kept = Arrays.copyOf(kept, Math.max(count, kept.length * 2));
+        }
+        return size - 1;
+    }
+
+    private void write(long time, long seq, int op, int type, int hash) {
+        int pos = (int) (written % capacity) * RECORD_SIZE;
+        buffer.putLong(pos, time);
+        buffer.putLong(pos + 8, seq << 2 | op);
+        buffer.putInt(pos + 16, type);
+        buffer.putInt(pos + 20, hash);
+        written++;
+    }
+
+    /**
+     * Copies the records in the buffer, and the current contents of the
+     * context, for replay.
+     */
+    public synchronized LookupRecording capture() {
+        int n = (int) Math.min(written, capacity);
+        long first = written - n;
+        long[] times = new long[n];
+        long[] seqs = new long[n];
+        int[] ops = new int[n];
+        int[] types = new int[n];
+        int[] hashes = new int[n];
+        for (int i = 0; i < n; i++) {
+            int pos = (int) ((first + i) % capacity) * RECORD_SIZE;
+            times[i] = buffer.getLong(pos);
+            long seqAndOp = buffer.getLong(pos + 8);
+            seqs[i] = seqAndOp >>> 2;
+            ops[i] = (int) (seqAndOp & 3);
+            types[i] = buffer.getInt(pos + 16);
+            hashes[i] = buffer.getInt(pos + 20);
+        }
+        long[] current = new long[stateCount];
+        for (int i = 0; i < stateCount; i++) {
+            current[i] = LookupRecording.key(typeIds.get(state[i].getClass()),
+                    System.identityHashCode(state[i]));
+        }
+        return new LookupRecording(times, seqs, ops, types, hashes, current,
+                typeNames.toArray(new String[typeNames.size()]));
+    }
+}
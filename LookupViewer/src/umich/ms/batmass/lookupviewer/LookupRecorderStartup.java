@@ -0,0 +1,30 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import org.openide.modules.OnStart;
+
+/**
+ * Starts the {@link LookupRecorder} when the module is loaded, so the
+ * changes of the global context are recorded from the start of the session,
+ * whether or not a viewer is ever opened.
+ * <p>
+ * Recording can be turned off with the system property
+ * {@code umich.ms.batmass.lookupviewer.recorder=false}; it can still be
+ * started from the timeline then.
+ */
+@OnStart
+public final class LookupRecorderStartup implements Runnable {
+
+    /** The system property that turns recording at startup on or off. */
+    public static final String PROPERTY = "umich.ms.batmass.lookupviewer.recorder";
+
+    @Override
+    public void run() {
+        if (Boolean.parseBoolean(System.getProperty(PROPERTY, "true"))) {
+            LookupRecorder.getDefault().start();
+        }
+    }
+}
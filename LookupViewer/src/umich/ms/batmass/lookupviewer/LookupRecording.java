@@ -0,0 +1,185 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A copy of the records of a {@link LookupRecorder}. The contents of the
+ * context after an event are reconstructed by starting from the contents at
+ * the time of the capture and undoing every later change, so they are exact
+ * for every event still in the buffer, even after the buffer has wrapped.
+ */
+public final class LookupRecording {
+
+    /**
+     * An object in the context, or one removed from it.
+     */
+    public static final class Entry {
+
+        public enum Change {
+            /** The object was there before the event. */
+            NONE,
+            /** The object was added by the event. */
+            ADDED,
+            /** The object was removed by the event. */
+            REMOVED
+        }
+
+        private final String type;
+        private final int identityHash;
+        private final Change change;
+
+        Entry(String type, int identityHash, Change change) {
+            this.type = type;
+            this.identityHash = identityHash;
+            this.change = change;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public int getIdentityHash() {
+            return identityHash;
+        }
+
+        public Change getChange() {
+            return change;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int c = a.type.compareTo(b.type);
+            return c != 0 ? c : Integer.compare(a.identityHash, b.identityHash);
+        }
+    };
+
+    private final long[] times;
+    private final long[] seqs;
+    private final int[] ops;
+    private final int[] types;
+    private final int[] hashes;
+    private final long[] current;
+    private final String[] typeNames;
+    /** The index of the event record of each complete event, plus the end. */
+    private final int[] eventStarts;
+
+    LookupRecording(long[] times, long[] seqs, int[] ops, int[] types, int[] hashes,
+            long[] current, String[] typeNames) {
+        this.times = times;
+        this.seqs = seqs;
+        this.ops = ops;
+        this.types = types;
+        this.hashes = hashes;
+        this.current = current;
+        this.typeNames = typeNames;
+        // the first event may have been partly overwritten; it starts at its event record
+        int count = 0;
+        for (int op : ops) {
+            if (op == LookupRecorder.OP_EVENT) {
+                count++;
+            }
+        }
+        eventStarts = new int[count + 1];
+        count = 0;
+        for (int i = 0; i < ops.length; i++) {
+            if (ops[i] == LookupRecorder.OP_EVENT) {
+                eventStarts[count++] = i;
+            }
+        }
+        eventStarts[count] = ops.length;
+    }
+
+    static long key(int type, int identityHash) {
+        return (long) type << 32 | (identityHash & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the number of events in the recording
+     */
+    public int getEventCount() {
+        return eventStarts.length - 1;
+    }
+
+    /**
+     * @return the number of the event since recording started
+     */
+    public long getEventNumber(int event) {
+        return seqs[eventStarts[event]];
+    }
+
+    /**
+     * @return the time of the event, in milliseconds since the epoch
+     */
+    public long getTime(int event) {
+        return times[eventStarts[event]];
+    }
+
+    /**
+     * @return the number of objects in the context after the event
+     */
+    public int getSize(int event) {
+        return types[eventStarts[event]];
+    }
+
+    /**
+     * Reconstructs the context after an event.
+     *
+     * @return the objects in the context after the event, and those removed
+     * by it, sorted by type
+     */
+    public List<Entry> getState(int event) {
+        Map<Long, int[]> counts = new HashMap<Long, int[]>();
+        for (long k : current) {
+            add(counts, k, 1);
+        }
+        int start = eventStarts[event];
+        int end = eventStarts[event + 1];
+        for (int i = ops.length - 1; i >= end; i--) {
+            if (ops[i] == LookupRecorder.OP_ADDED) {
+                add(counts, key(types[i], hashes[i]), -1);
+            } else if (ops[i] == LookupRecorder.OP_REMOVED) {
+                add(counts, key(types[i], hashes[i]), 1);
+            }
+        }
+        List<Entry> entries = new ArrayList<Entry>();
+        Map<Long, int[]> added = new HashMap<Long, int[]>();
+        for (int i = start + 1; i < end; i++) {
+            if (ops[i] == LookupRecorder.OP_ADDED) {
+                add(added, key(types[i], hashes[i]), 1);
+            } else if (ops[i] == LookupRecorder.OP_REMOVED) {
+                entries.add(new Entry(typeNames[types[i]], hashes[i], Entry.Change.REMOVED));
+            }
+        }
+        for (Map.Entry<Long, int[]> e : counts.entrySet()) {
+            long k = e.getKey();
+            int[] a = added.get(k);
+            int addedCount = a == null ? 0 : a[0];
+            for (int n = 0; n < e.getValue()[0]; n++) {
+                entries.add(new Entry(typeNames[(int) (k >>> 32)], (int) k,
+                        n < addedCount ? Entry.Change.ADDED : Entry.Change.NONE));
+            }
+        }
+        Collections.sort(entries, ORDER);
+        return entries;
+    }
+
+    private static void add(Map<Long, int[]> counts, long k, int delta) {
+        int[] c = counts.get(k);
+        if (c == null) {
+            counts.put(k, new int[]{delta});
+        } else {
+            c[0] += delta;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSlider;
+import javax.swing.JTable;
+import javax.swing.JToggleButton;
+import javax.swing.JToolBar;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.table.AbstractTableModel;
+import org.openide.awt.ActionID;
+import org.openide.awt.ActionReference;
+import org.openide.util.NbBundle;
+import org.openide.windows.TopComponent;
+
+/**
+ * Replays the changes of the global context kept by the
+ * {@link LookupRecorder}: a capture of the recording is scrubbed with a
+ * slider, and the table shows what the context held after the selected event.
+ */
+@TopComponent.Description(preferredID = "LookupTimelineTopComponent",
+persistenceType = TopComponent.PERSISTENCE_NEVER)
+@TopComponent.Registration(mode = "output", openAtStartup = false)
+@ActionID(category = "Window", id = "org.netbeans.lookup.viewer.LookupTimelineTopComponent")
+@ActionReference(path = "Menu/Window")
+@TopComponent.OpenActionRegistration(
+    displayName = "#CTL_LookupTimelineAction",
+preferredID = "LookupTimelineTopComponent")
+@NbBundle.Messages({
+    "CTL_LookupTimelineAction=Lookup Timeline",
+    "CTL_LookupTimelineTopComponent=Lookup Timeline",
+    "HINT_LookupTimelineTopComponent=Replays the recorded changes of the global context",
+    "LBL_Capture=Capture",
+    "HINT_Capture=Take the changes recorded so far",
+    "LBL_NoEvents=No events recorded",
+    "# {0} - event number",
+    "# {1} - time",
+    "# {2} - number of objects",
+    "LBL_TimelineEvent=Event {0} at {1}: {2} objects",
+    "COL_Change=Change",
+    "COL_IdentityHash=Identity Hash",
+    "LBL_Added=added",
+    "LBL_Removed=removed"
+})
+public class LookupTimelineTopComponent extends TopComponent {
+
+    private final LookupRecorder recorder = LookupRecorder.getDefault();
+    private final DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+    private final JSlider slider = new JSlider(0, 0, 0);
+    private final JLabel eventLabel = new JLabel();
+    private final EntryTableModel model = new EntryTableModel();
+    private LookupRecording recording;
+
+    public LookupTimelineTopComponent() {
+        setName(Bundle.CTL_LookupTimelineTopComponent());
+        setToolTipText(Bundle.HINT_LookupTimelineTopComponent());
+        setLayout(new BorderLayout());
+        slider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                showEvent(slider.getValue());
+            }
+        });
+        JPanel top = new JPanel(new BorderLayout());
+        top.add(createToolBar(), BorderLayout.NORTH);
+        top.add(slider, BorderLayout.CENTER);
+        top.add(eventLabel, BorderLayout.SOUTH);
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        table.setFillsViewportHeight(true);
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+    }
+
+    private JToolBar createToolBar() {
+        JToolBar toolBar = new JToolBar();
+        toolBar.setFloatable(false);
+        final JToggleButton recordButton = new JToggleButton(Bundle.LBL_Record());
+        recordButton.setSelected(recorder.isRecording());
+        recordButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (recordButton.isSelected()) {
+                    recorder.start();
+                } else {
+                    recorder.stop();
+                }
+            }
+        });
+        toolBar.add(recordButton);
+        JButton captureButton = new JButton(Bundle.LBL_Capture());
+        captureButton.setToolTipText(Bundle.HINT_Capture());
+        captureButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                capture();
+            }
+        });
+        toolBar.add(captureButton);
+        return toolBar;
+    }
+
+    private void capture() {
+        recording = recorder.capture();
+        int events = recording.getEventCount();
+        slider.setMaximum(Math.max(0, events - 1));
+        slider.setValue(Math.max(0, events - 1));
+        slider.setEnabled(events > 0);
+        showEvent(slider.getValue());
+    }
+
+    private void showEvent(int event) {
+        if (recording == null || event >= recording.getEventCount()) {
+            eventLabel.setText(Bundle.LBL_NoEvents());
+            model.setRows(Collections.<LookupRecording.Entry>emptyList());
+            return;
+        }
+        eventLabel.setText(Bundle.LBL_TimelineEvent(recording.getEventNumber(event),
+                timeFormat.format(new Date(recording.getTime(event))), recording.getSize(event)));
+        model.setRows(recording.getState(event));
+    }
+
+    @Override
+    protected void componentOpened() {
+        capture();
+    }
+
+    @Override
+    protected void componentClosed() {
+        recording = null;
+        model.setRows(Collections.<LookupRecording.Entry>emptyList());
+    }
+
+    private static class EntryTableModel extends AbstractTableModel {
+
+        private List<LookupRecording.Entry> rows = Collections.emptyList();
+
+        void setRows(List<LookupRecording.Entry> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 3;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            switch (column) {
+                case 0: return Bundle.COL_Type();
+                case 1: return Bundle.COL_IdentityHash();
+                default: return Bundle.COL_Change();
+            }
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            LookupRecording.Entry e = rows.get(row);
+            switch (column) {
+                case 0: return e.getType();
+                case 1: return Integer.toHexString(e.getIdentityHash());
+                default:
+                    switch (e.getChange()) {
+                        case ADDED: return Bundle.LBL_Added();
+                        case REMOVED: return Bundle.LBL_Removed();
+                        default: return "";
+                    }
+            }
+        }
+    }
+}
@@ -4,33 +4,125 @@
  */
 package umich.ms.batmass.lookupviewer;
 
-import java.beans.IntrospectionException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.openide.nodes.ChildFactory;
-import org.openide.nodes.Children;
 import org.openide.nodes.Node;
-import org.openide.util.Exceptions;
 import org.openide.util.Lookup.Result;
 import org.openide.util.LookupEvent;
 import org.openide.util.LookupListener;
+import org.openide.util.RequestProcessor;
 import org.openide.util.Utilities;
+import org.openide.windows.TopComponent;
 import org.openide.windows.WindowManager;
 
 /**
+ * Creates a node for every object in the global context. Keys wrap the objects
+ * by identity (see {@link InstanceKey}), and the factory is only refreshed when
+ * the set of instances actually changed, so nodes of objects that stay in the
+ * context are kept along with their expanded subtrees.
+ * <p>
+ * Lookup events only schedule an update: events arriving within the update
+ * delay of the first one are collapsed into it, and the update reads the
+ * lookup on a background thread. So the viewer adds no work to the thread
+ * that changed the context beyond scheduling a task.
+ * <p>
+ * By default the keys only hold weak references to the objects (see
+ * {@link #setReferenceMode}), so neither the tree nor the copy kept while an
+ * {@link ExcludeFromLookup} window is active prevents large objects from being
+ * garbage collected after they leave the context. Collected objects are pruned
+ * from the tree.
+ * <p>
+ * Contexts with many objects can be grouped by type (see
+ * {@link #setGroupByType}): then the top level has one {@link TypeGroupNode}
+ * per class, and nodes for the objects are only created a page at a time when
+ * a group is expanded. Contexts with more than {@link #AUTO_GROUP_THRESHOLD}
+ * objects are always grouped.
+ * <p>
+ * The tree can be filtered by type (see {@link #setFilter}). The classes of
+ * the objects are indexed by the names of all their supertypes once per
+ * update, in a {@link TypeIndex}, so changing the filter doesn't look at the
+ * objects again.
  *
  * @author Geertjan
  */
 public class LookupViewerChildFactory extends ChildFactory.Detachable<Object> implements LookupListener {
 
+    /** The default time in ms that lookup changes are collected for before the tree is updated. */
+    public static final int DEFAULT_UPDATE_DELAY = 100;
+
+    /** The number of objects above which the top level is grouped by type regardless of {@link #setGroupByType}. */
+    public static final int AUTO_GROUP_THRESHOLD = 1000;
+
+    /**
+     * How the viewer holds the objects it displays.
+     */
+    public enum ReferenceMode {
+
+        /** The objects are held until they leave the tree. */
+        STRONG,
+        /** The objects can be collected as soon as nothing else holds them. */
+        WEAK,
+        /** The objects can be collected when memory runs low. */
+        SOFT
+    }
+
+    private static final RequestProcessor RP = new RequestProcessor(LookupViewerChildFactory.class.getName(), 1);
+
     private Result<Object> lookupResult;
-    boolean keepOld = false;
-    private ArrayList<Object> objectsList = new ArrayList<Object>();
-    private ArrayList<Object> copyObjectsList = new ArrayList<Object>();
+    private volatile int updateDelay = DEFAULT_UPDATE_DELAY;
+    /** Whether an update is scheduled and hasn't started reading the lookup yet. */
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    private final RequestProcessor.Task updateTask = RP.create(new Runnable() {
+        @Override
+        public void run() {
+            update();
+        }
+    });
+    private volatile ReferenceMode referenceMode = ReferenceMode.WEAK;
+    /** Removes the keys of collected objects; runs on the same thread as updates. */
+    private final RequestProcessor.Task pruneTask = RP.create(new Runnable() {
+        @Override
+        public void run() {
+            prune();
+        }
+    });
+    /** Run by the keys after their object was collected. */
+    private final Runnable cleaner = new Runnable() {
+        @Override
+        public void run() {
+            pruneTask.schedule(updateDelay);
+        }
+    };
+    volatile boolean keepOld = false;
+    private volatile List<InstanceKey> objectsList = Collections.emptyList();
+    private volatile List<InstanceKey> copyObjectsList = objectsList;
+    private volatile boolean groupByType = false;
+    /** The groups of objectsList, or null if it isn't grouped. */
+    private volatile List<TypeGroup> groups;
+    /** The groups by class name, so they can be reused; only used on the update thread. */
+    private final Map<String, TypeGroup> groupsByName = new HashMap<String, TypeGroup>();
+    /** Shared by the nested lookups of all nodes. */
+    private final ExpansionContext expansion = new ExpansionContext();
+    private volatile String filter = "";
+    /** The classes of objectsList; only used on the update thread. */
+    private final TypeIndex typeIndex = new TypeIndex();
+    /** The keys or groups that match the filter, or null if there is no filter. */
+    private volatile List<Object> filtered;
 
     @Override
     protected boolean createKeys(List<Object> list) {
-        if (keepOld) {
+        List<Object> f = filtered;
+        List<TypeGroup> g = groups;
+        if (f != null) {
+            list.addAll(f);
+        } else if (g != null) {
+            list.addAll(g);
+        } else if (keepOld) {
             list.addAll(copyObjectsList);
         } else {
             list.addAll(objectsList);
@@ -40,37 +132,209 @@ public class LookupViewerChildFactory extends ChildFactory.Detachable<Object> im
 
     @Override
     protected Node createNodeForKey(final Object key) {
-              LookupNode node = null;
-
-        try {
-            node = new LookupNode(key, Children.create(new SubViewerChildFactory(key), true));
-        } catch (IntrospectionException ex) {
-            Exceptions.printStackTrace(ex);
+        if (key instanceof TypeGroup) {
+            return new TypeGroupNode((TypeGroup) key, expansion);
         }
-        return node;
+        return SubViewerChildFactory.createNode((InstanceKey) key, expansion);
     }
 
     @Override
     protected void addNotify() {
         lookupResult = Utilities.actionsGlobalContext().lookupResult(Object.class);
         lookupResult.addLookupListener(this);
+        // show what is in the context already, without waiting for it to change
+        resultChanged(null);
     }
 
     @Override
     protected void removeNotify() {
         lookupResult.removeLookupListener(this);
+        updateTask.cancel();
+        updatePending.set(false);
+    }
+
+    /**
+     * Sets the time lookup changes are collected for before the tree is
+     * updated.
+     *
+     * @param millis the delay in milliseconds; 0 updates on the next
+     * background tick
+     */
+    public void setUpdateDelay(int millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("delay must not be negative: " + millis);
+        }
+        updateDelay = millis;
+    }
+
+    public int getUpdateDelay() {
+        return updateDelay;
+    }
+
+    /**
+     * Sets how the objects in the tree are held. Changing this recreates the
+     * nodes on the next update.
+     */
+    public void setReferenceMode(ReferenceMode mode) {
+        if (mode == null) {
+            throw new NullPointerException();
+        }
+        if (referenceMode != mode) {
+            referenceMode = mode;
+            resultChanged(null);
+        }
+    }
+
+    public ReferenceMode getReferenceMode() {
+        return referenceMode;
+    }
+
+    /**
+     * Sets whether the top level shows a node per class instead of a node per
+     * object. Contexts with more than {@link #AUTO_GROUP_THRESHOLD} objects
+     * are grouped either way.
+     */
+    public void setGroupByType(boolean b) {
+        if (groupByType != b) {
+            groupByType = b;
+            RP.post(new Runnable() {
+                @Override
+                public void run() {
+                    publish(objectsList, true);
+                }
+            });
+        }
+    }
+
+    public boolean isGroupByType() {
+        return groupByType;
+    }
+
+    /**
+     * Sets how deep nested lookups (of objects that are
+     * {@link org.openide.util.Lookup.Provider}s) can be expanded. The top
+     * level is depth 0. This applies to nodes created from now on.
+     */
+    public void setMaxDepth(int depth) {
+        expansion.setMaxDepth(depth);
+    }
+
+    public int getMaxDepth() {
+        return expansion.getMaxDepth();
+    }
+
+    /**
+     * Shows only the objects with a class, superclass or interface whose
+     * simple or fully qualified name starts with the given text, ignoring
+     * case. Matching objects are sorted by class.
+     *
+     * @param text the prefix; empty to show all objects
+     */
+    public void setFilter(String text) {
+        final String f = text == null ? "" : text.trim();
+        if (!f.equals(filter)) {
+            filter = f;
+            RP.post(new Runnable() {
+                @Override
+                public void run() {
+                    applyFilter();
+                    refresh(false);
+                }
+            });
+        }
+    }
+
+    public String getFilter() {
+        return filter;
     }
 
     @Override
     public void resultChanged(LookupEvent le) {
-        if (WindowManager.getDefault().getRegistry().getActivated().getLookup().lookup(ExcludeFromLookup.class) != null) {
+        // the first event of a burst schedules the update; the rest are covered by it
+        if (updatePending.compareAndSet(false, true)) {
+            updateTask.schedule(updateDelay);
+        }
+    }
+
+    private void update() {
+        // events from here on need another update, since the lookup is read below
+        updatePending.set(false);
+        TopComponent activated = WindowManager.getDefault().getRegistry().getActivated();
+        if (activated != null && activated.getLookup().lookup(ExcludeFromLookup.class) != null) {
+            // the frozen copy is what is displayed already
             keepOld = true;
+            return;
+        }
+        keepOld = false;
+        List<InstanceKey> keys = InstanceKey.diff(objectsList, lookupResult.allInstances(), referenceMode, cleaner);
+        publish(keys, false);
+    }
+
+    private void prune() {
+        publish(InstanceKey.prune(objectsList), false);
+    }
+
+    /**
+     * Shows new keys, grouping them if necessary. Only called on the update
+     * thread.
+     *
+     * @param keys the new keys
+     * @param force whether to refresh even if the keys didn't change
+     */
+    private void publish(List<InstanceKey> keys, boolean force) {
+        if (keys == objectsList && !force) {
+            return;
+        }
+        objectsList = keys;
+        copyObjectsList = keys;
+        // read nested lookups again as they are expanded
+        expansion.clear();
+        typeIndex.update(keys);
+        List<TypeGroup> oldGroups = groups;
+        if (groupByType || keys.size() > AUTO_GROUP_THRESHOLD) {
+            List<TypeGroup> newGroups = TypeGroup.group(keys, groupsByName);
+            groupsByName.clear();
+            for (TypeGroup group : newGroups) {
+                groupsByName.put(group.getTypeName(), group);
+            }
+            groups = newGroups;
+            applyFilter();
+            // existing groups update their own nodes; only a new set of groups needs a refresh
+            if (force || oldGroups == null || !oldGroups.equals(newGroups)) {
+                refresh(false);
+            }
+        } else {
+            groups = null;
+            groupsByName.clear();
+            applyFilter();
+            refresh(false);
+        }
+    }
+
+    /**
+     * Computes the keys that match the filter from the index. Only called on
+     * the update thread.
+     */
+    private void applyFilter() {
+        String f = filter;
+        if (f.isEmpty()) {
+            filtered = null;
+            return;
+        }
+        List<Class<?>> types = typeIndex.find(f);
+        List<Object> keys = new ArrayList<Object>();
+        if (groups != null) {
+            for (Class<?> type : types) {
+                TypeGroup group = groupsByName.get(type.getName());
+                if (group != null) {
+                    keys.add(group);
+                }
+            }
         } else {
-            keepOld = false;
-            objectsList = new ArrayList<Object>();
-            objectsList.addAll(lookupResult.allInstances());
-            copyObjectsList = objectsList;
+            for (Class<?> type : types) {
+                keys.addAll(typeIndex.getMembers(type));
+            }
         }
-        refresh(false);
+        filtered = keys;
     }
 }
@@ -5,11 +5,19 @@
 package umich.ms.batmass.lookupviewer;
 
 import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.JLabel;
+import javax.swing.JTextField;
+import javax.swing.JToggleButton;
+import javax.swing.JToolBar;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import org.openide.awt.ActionID;
 import org.openide.awt.ActionReference;
 import org.openide.explorer.ExplorerManager;
 import org.openide.explorer.ExplorerUtils;
-import org.openide.explorer.view.BeanTreeView;
+import org.openide.explorer.view.OutlineView;
 import org.openide.nodes.AbstractNode;
 import org.openide.nodes.Children;
 import org.openide.util.NbBundle;
@@ -29,26 +37,87 @@ preferredID = "LookupTopComponent")
 @NbBundle.Messages({
     "CTL_LookupAction=Lookup",
     "CTL_LookupTopComponent=Objects Currently in the Lookup",
-    "HINT_LookupTopComponent=This is a Lookup window"
+    "HINT_LookupTopComponent=This is a Lookup window",
+    "LBL_GroupByType=Group by Type",
+    "HINT_GroupByType=Show a node per class, with the objects loaded a page at a time",
+    "LBL_ObjectColumn=Object",
+    "LBL_ShowSizes=Sizes",
+    "HINT_ShowSizes=Show columns with the estimated memory used by each object; click a column header to sort",
+    "LBL_Filter=Filter: ",
+    "HINT_Filter=Show only objects with a class, superclass or interface whose name starts with this text"
 })
 public class LookupViewerTopComponent extends TopComponent implements ExplorerManager.Provider {
 
     private InstanceContent ic = new InstanceContent();
     private ExplorerManager em = new ExplorerManager();
+    private final LookupViewerChildFactory factory = new LookupViewerChildFactory();
+    private final OutlineView view = new OutlineView(Bundle.LBL_ObjectColumn());
 
     public LookupViewerTopComponent() {
         setName(Bundle.CTL_LookupTopComponent());
         setToolTipText(Bundle.HINT_LookupTopComponent());
         setLayout(new BorderLayout());
-        BeanTreeView btv = new BeanTreeView();
-        btv.setRootVisible(true);
-        AbstractNode node = new AbstractNode(Children.create(new LookupViewerChildFactory(), true));
+        AbstractNode node = new AbstractNode(Children.create(factory, true));
         em.setRootContext(node);
-        add(btv, BorderLayout.CENTER);
+        add(createToolBar(), BorderLayout.NORTH);
+        add(view, BorderLayout.CENTER);
         associateLookup(new ProxyLookup(ExplorerUtils.createLookup(em, getActionMap()), new AbstractLookup(ic)));
         ic.add(new ExcludeFromLookup());
     }
 
+    private JToolBar createToolBar() {
+        JToolBar toolBar = new JToolBar();
+        toolBar.setFloatable(false);
+        final JToggleButton groupButton = new JToggleButton(Bundle.LBL_GroupByType());
+        groupButton.setToolTipText(Bundle.HINT_GroupByType());
+        groupButton.setSelected(factory.isGroupByType());
+        groupButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                factory.setGroupByType(groupButton.isSelected());
+            }
+        });
+        toolBar.add(groupButton);
+        final JToggleButton sizesButton = new JToggleButton(Bundle.LBL_ShowSizes());
+        sizesButton.setToolTipText(Bundle.HINT_ShowSizes());
+        sizesButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // the retained sizes are only computed once their column shows them
+                if (sizesButton.isSelected()) {
+                    view.addPropertyColumn(LookupNode.PROP_SHALLOW_SIZE, Bundle.LBL_ShallowSize(), Bundle.HINT_ShallowSize());
+                    view.addPropertyColumn(LookupNode.PROP_RETAINED_SIZE, Bundle.LBL_RetainedSize(), Bundle.HINT_RetainedSize());
+                } else {
+                    view.removePropertyColumn(LookupNode.PROP_SHALLOW_SIZE);
+                    view.removePropertyColumn(LookupNode.PROP_RETAINED_SIZE);
+                }
+            }
+        });
+        toolBar.add(sizesButton);
+        toolBar.addSeparator();
+        toolBar.add(new JLabel(Bundle.LBL_Filter()));
+        final JTextField filterField = new JTextField(20);
+        filterField.setToolTipText(Bundle.HINT_Filter());
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                factory.setFilter(filterField.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                factory.setFilter(filterField.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                factory.setFilter(filterField.getText());
+            }
+        });
+        toolBar.add(filterField);
+        return toolBar;
+    }
+
     @Override
     public ExplorerManager getExplorerManager() {
         return em;
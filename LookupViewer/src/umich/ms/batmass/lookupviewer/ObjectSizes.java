@@ -0,0 +1,289 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the memory used by objects, for triage in the viewer without a
+ * heap dump.
+ * <p>
+ * The shallow size of an instance is computed from the layout of its class,
+ * which is read once per class and cached in a {@link ClassValue}: a header,
+ * the sizes of all instance fields, and alignment to 8 bytes. The header and
+ * reference sizes are guessed from the data model and the maximum heap, the
+ * way HotSpot chooses compressed references. Padding between fields is
+ * ignored, so the estimate may be a few bytes low.
+ * <p>
+ * The retained size is approximated by the total shallow size of the objects
+ * reachable from an object, up to a maximum depth and within a time budget,
+ * each object counted once. Objects shared with other roots are included, so
+ * this is an upper bound on what collecting the object would free, unless the
+ * walk was cut short.
+ */
+final class ObjectSizes {
+
+    private static final boolean IS_64 = !"32".equals(System.getProperty("sun.arch.data.model"));
+    /** HotSpot compresses references for heaps below 32 GB. */
+    private static final boolean COMPRESSED = IS_64 && Runtime.getRuntime().maxMemory() < (32L << 30);
+    private static final int REFERENCE_SIZE = IS_64 && !COMPRESSED ? 8 : 4;
+    private static final int HEADER_SIZE = !IS_64 ? 8 : COMPRESSED ? 12 : 16;
+    private static final int ARRAY_HEADER_SIZE = HEADER_SIZE + 4;
+
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return new Layout(type);
+        }
+    };
+
+    private ObjectSizes() {
+    }
+
+    /**
+     * The size of the instances of a class, and the fields that refer to
+     * other objects.
+     */
+    private static final class Layout {
+
+        private static final Field[] NO_FIELDS = new Field[0];
+
+        /** The size of an instance, or of an array without its elements. */
+        final long size;
+        /** The size of an array element, or 0 if the class is no array. */
+        final int elementSize;
+        final boolean referenceArray;
+        /** The accessible reference fields, including inherited ones. */
+        final Field[] references;
+        /** Whether some reference fields aren't accessible. */
+        final boolean opaque;
+
+        Layout(Class<?> type) {
+            if (type.isArray()) {
+                Class<?> component = type.getComponentType();
+                size = ARRAY_HEADER_SIZE;
+                elementSize = fieldSize(component);
+                referenceArray = !component.isPrimitive();
+                references = NO_FIELDS;
+                opaque = false;
+                return;
+            }
+            long s = HEADER_SIZE;
+            boolean o = false;
+            List<Field> refs = new ArrayList<Field>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) {
+                        continue;
+                    }
+                    s += fieldSize(f.getType());
+                    if (!f.getType().isPrimitive()) {
+                        try {
+                            f.setAccessible(true);
+                            refs.add(f);
+                        } catch (RuntimeException ex) {
+                            // not accessible (security manager or module)
+                            o = true;
+                        }
+                    }
+                }
+            }
+            size = align(s);
+            elementSize = 0;
+            referenceArray = false;
+            references = refs.toArray(new Field[refs.size()]);
+            opaque = o;
+        }
+
+        long sizeOf(Object o) {
+            if (elementSize == 0) {
+                return size;
+            }
+            return align(size + (long) Array.getLength(o) * elementSize);
+        }
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return REFERENCE_SIZE;
+        }
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * @return the estimated size in bytes of the object itself
+     */
+    static long shallowSize(Object o) {
+        return LAYOUTS.get(o.getClass()).sizeOf(o);
+    }
+
+    /**
+     * The result of a retained size walk.
+     */
+    static final class Estimate {
+
+        final long size;
+        /** Whether every reachable object was counted. */
+        final boolean complete;
+
+        Estimate(long size, boolean complete) {
+            this.size = size;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * Adds up the shallow sizes of the objects reachable from an object,
+     * breadth first. Classes, class loaders and threads are not followed:
+     * they are shared by everything and would make every object look huge.
+     * <p>
+     * The time budget is checked while the referents of each object are
+     * enumerated, not just between objects, and at most
+     * {@link #MAX_VISITED} objects are visited, so a huge array can't make the
+     * walk itself run long or use a lot of memory.
+     *
+     * @param maxDepth the number of references followed from the object
+     * @param budgetNanos the time after which the walk stops
+     */
+    static Estimate retainedSize(Object root, int maxDepth, long budgetNanos) {
+        Walk walk = new Walk(System.nanoTime() + budgetNanos);
+        List<Object> level = new ArrayList<Object>();
+        level.add(root);
+        walk.visited.put(root, Boolean.TRUE);
+        long size = 0;
+        boolean complete = true;
+        for (int depth = 0; !level.isEmpty(); depth++) {
+            List<Object> next = new ArrayList<Object>();
+            for (Object o : level) {
+                Layout layout = LAYOUTS.get(o.getClass());
+                size += layout.sizeOf(o);
+                if (depth < maxDepth) {
+                    walk.addReferents(o, layout, next);
+                } else if (complete && walk.addReferents(o, layout, null)) {
+                    complete = false;
+                }
+                if (walk.stopped) {
+                    return new Estimate(size, false);
+                }
+            }
+            level = next;
+        }
+        return new Estimate(size, complete);
+    }
+
+    /** The maximum number of objects a retained size walk visits. */
+    static final int MAX_VISITED = 1 << 18;
+
+    /**
+     * The state of a retained size walk.
+     */
+    private static final class Walk {
+
+        final long deadline;
+        final Map<Object, Boolean> visited = new IdentityHashMap<Object, Boolean>();
+        /** Whether the time or the number of visited objects ran out. */
+        boolean stopped;
+        private int checks;
+
+        Walk(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Adds the referents of an object that weren't visited yet to next,
+         * or, if next is null, only checks whether there are any. The
+         * contents of collections and maps whose fields can't be read are
+         * found through their API instead, without the internal objects that
+         * hold them. Stops early when the walk is stopped.
+         *
+         * @return whether there were referents that weren't visited yet
+         */
+        boolean addReferents(Object o, Layout layout, List<Object> next) {
+            boolean found = false;
+            if (layout.referenceArray) {
+                for (Object r : (Object[]) o) {
+                    found |= visit(r, next);
+                    if (stopped || found && next == null) {
+                        return found;
+                    }
+                }
+                return found;
+            }
+            for (Field f : layout.references) {
+                try {
+                    found |= visit(f.get(o), next);
+                } catch (IllegalAccessException ex) {
+                    // made accessible when the layout was read
+                }
+                if (stopped || found && next == null) {
+                    return found;
+                }
+            }
+            if (layout.opaque) {
+                try {
+                    if (o instanceof Collection) {
+                        for (Object r : (Collection<?>) o) {
+                            found |= visit(r, next);
+                            if (stopped || found && next == null) {
+                                return found;
+                            }
+                        }
+                    } else if (o instanceof Map) {
+                        for (Map.Entry<?, ?> entry : ((Map<?, ?>) o).entrySet()) {
+                            found |= visit(entry.getKey(), next);
+                            found |= visit(entry.getValue(), next);
+                            if (stopped || found && next == null) {
+                                return found;
+                            }
+                        }
+                    }
+                } catch (RuntimeException ex) {
+                    // modified concurrently; the estimate is approximate anyway
+                }
+            }
+            return found;
+        }
+
+        private boolean visit(Object r, List<Object> next) {
+            if ((++checks & 0xFF) == 0 && System.nanoTime() > deadline) {
+                stopped = true;
+                return false;
+            }
+            if (r == null || r instanceof Class || r instanceof ClassLoader || r instanceof Thread
+                    || visited.containsKey(r)) {
+                return false;
+            }
+            if (next != null) {
+                if (visited.size() >= MAX_VISITED) {
+                    stopped = true;
+                    return false;
+                }
+                visited.put(r, Boolean.TRUE);
+                next.add(r);
+            }
+            return true;
+        }
+    }
+}
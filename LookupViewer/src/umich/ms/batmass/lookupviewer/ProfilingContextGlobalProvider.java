@@ -0,0 +1,54 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import org.openide.util.ContextGlobalProvider;
+import org.openide.util.Lookup;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Provides the global context of {@code Utilities.actionsGlobalContext()}
+ * with the results of its lookup wrapped by the {@link LookupProfiler}, so
+ * the listeners of every module are timed while the profiler is running.
+ * <p>
+ * It is registered ahead of the platform's provider and delegates to it: the
+ * context is created by the next {@link ContextGlobalProvider} in the default
+ * lookup, and only its results are wrapped.
+ */
+@ServiceProvider(service = ContextGlobalProvider.class, position = -1000)
+public class ProfilingContextGlobalProvider implements ContextGlobalProvider {
+
+    @Override
+    public Lookup createGlobalContext() {
+        for (ContextGlobalProvider p : Lookup.getDefault().lookupAll(ContextGlobalProvider.class)) {
+            if (!(p instanceof ProfilingContextGlobalProvider)) {
+                return new ProfilingLookup(p.createGlobalContext());
+            }
+        }
+        return Lookup.EMPTY;
+    }
+
+    /**
+     * A lookup whose results time their listeners.
+     */
+    private static final class ProfilingLookup extends Lookup {
+
+        private final Lookup delegate;
+
+        ProfilingLookup(Lookup delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public <T> T lookup(Class<T> clazz) {
+            return delegate.lookup(clazz);
+        }
+
+        @Override
+        public <T> Lookup.Result<T> lookup(Lookup.Template<T> template) {
+            return LookupProfiler.profile(delegate.lookup(template));
+        }
+    }
+}
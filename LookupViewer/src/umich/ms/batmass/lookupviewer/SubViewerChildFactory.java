@@ -4,49 +4,126 @@
  */
 package umich.ms.batmass.lookupviewer;
 
-import java.beans.IntrospectionException;
 import java.util.List;
 import org.openide.nodes.ChildFactory;
 import org.openide.nodes.Children;
 import org.openide.nodes.Node;
-import org.openide.util.Exceptions;
 import org.openide.util.Lookup;
+import org.openide.util.NbBundle;
 
 /**
+ * Creates the children of a node whose object is a {@link Lookup.Provider}:
+ * one for every object in its lookup. The keys hold their objects the same
+ * way as the key of the parent node.
+ * <p>
+ * Lookups often refer back to each other, so expansion is guarded: an object
+ * that already appears on the path from the top level is shown as a leaf
+ * instead of being expanded again, and so is every provider at the maximum
+ * depth of the {@link ExpansionContext}. The contents of each provider are
+ * read once and shared through the context.
  *
  * @author Geertjan
  */
-class SubViewerChildFactory extends ChildFactory<Object> {
+@NbBundle.Messages({
+    "# {0} - class name",
+    "LBL_Cycle={0} (cycle)",
+    "HINT_Cycle=This object already appears above; it is not expanded again",
+    "# {0} - class name",
+    "LBL_MaxDepth={0} (...)",
+    "HINT_MaxDepth=The maximum depth of nested lookups was reached"
+})
+class SubViewerChildFactory extends ChildFactory<InstanceKey> {
 
-    private final Object key;
+    private final ExpansionContext context;
+    /** The path to the node of this factory; its key is the parent object. */
+    private final Path path;
 
-    public SubViewerChildFactory(Object key) {
-        this.key = key;
+    SubViewerChildFactory(InstanceKey key, ExpansionContext context) {
+        this(context, new Path(key, null));
+    }
+
+    private SubViewerChildFactory(ExpansionContext context, Path path) {
+        this.context = context;
+        this.path = path;
+    }
+
+    /**
+     * Creates the node for an object, with children if it is a lookup
+     * provider.
+     *
+     * @return the node, or {@code null} if the object was collected
+     */
+    static Node createNode(InstanceKey key, ExpansionContext context) {
+        Object o = key.get();
+        if (o == null) {
+            return null;
+        }
+        if (!(o instanceof Lookup.Provider)) {
+            return new LookupNode(key, Children.LEAF);
+        }
+        return new LookupNode(key, Children.create(new SubViewerChildFactory(key, context), true));
     }
 
     @Override
-    protected boolean createKeys(List<Object> list) {
-        if (key instanceof Lookup.Provider) {
-            Lookup.Provider lp = (Lookup.Provider)key;
-            list.addAll(lp.getLookup().lookupAll(Object.class));
+    protected boolean createKeys(List<InstanceKey> list) {
+        Object o = path.key.get();
+        if (o instanceof Lookup.Provider) {
+            list.addAll(context.getContents(path.key, (Lookup.Provider) o));
         }
         return true;
     }
 
     @Override
-    protected Node createNodeForKey(Object subkey) {
-             LookupNode node = null;
-
-        try {
-            node = new LookupNode(key, Children.create(new SubViewerChildFactory(subkey), true));
-        } catch (IntrospectionException ex) {
-            Exceptions.printStackTrace(ex);
+    protected Node createNodeForKey(InstanceKey subkey) {
+        Object o = subkey.get();
+        if (o == null) {
+            return null;
         }
-        return node;
+        if (!(o instanceof Lookup.Provider)) {
+            return new LookupNode(subkey, Children.LEAF);
+        }
+        if (path.contains(o)) {
+            LookupNode node = new LookupNode(subkey, Children.LEAF);
+            node.setDisplayName(Bundle.LBL_Cycle(node.getDisplayName()));
+            node.setShortDescription(Bundle.HINT_Cycle());
+            return node;
+        }
+        if (path.depth + 1 >= context.getMaxDepth()) {
+            LookupNode node = new LookupNode(subkey, Children.LEAF);
+            node.setDisplayName(Bundle.LBL_MaxDepth(node.getDisplayName()));
+            node.setShortDescription(Bundle.HINT_MaxDepth());
+            return node;
+        }
+        return new LookupNode(subkey, Children.create(
+                new SubViewerChildFactory(context, new Path(subkey, path)), true));
     }
 
+    /**
+     * The keys from the top level down to a node. Paths are immutable and
+     * share their parents.
+     */
+    private static final class Path {
 
+        final InstanceKey key;
+        final Path parent;
+        final int depth;
 
+        Path(InstanceKey key, Path parent) {
+            this.key = key;
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
 
-
+        /**
+         * @return whether an object is on this path, compared by identity
+         */
+        boolean contains(Object o) {
+            for (Path p = this; p != null; p = p.parent) {
+                if (p.key.get() == o) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
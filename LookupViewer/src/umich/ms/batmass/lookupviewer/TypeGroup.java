@@ -0,0 +1,89 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.event.ChangeListener;
+import org.openide.util.ChangeSupport;
+
+/**
+ * The objects of one class in a lookup. The same group is kept (and updated)
+ * for as long as its class is present, so its node and expansion state survive
+ * refreshes.
+ */
+final class TypeGroup {
+
+    private final String typeName;
+    private volatile List<InstanceKey> members = Collections.emptyList();
+    private final ChangeSupport changeSupport = new ChangeSupport(this);
+
+    TypeGroup(String typeName) {
+        this.typeName = typeName;
+    }
+
+    String getTypeName() {
+        return typeName;
+    }
+
+    List<InstanceKey> getMembers() {
+        return members;
+    }
+
+    void setMembers(List<InstanceKey> keys) {
+        if (!keys.equals(members)) {
+            members = keys;
+            changeSupport.fireChange();
+        }
+    }
+
+    void addChangeListener(ChangeListener l) {
+        changeSupport.addChangeListener(l);
+    }
+
+    void removeChangeListener(ChangeListener l) {
+        changeSupport.removeChangeListener(l);
+    }
+
+    /**
+     * Groups keys by the class of their objects.
+     *
+     * @param keys the keys to group
+     * @param old the groups of the previous call; groups of classes that are
+     * still present are reused and updated
+     * @return the groups, sorted by class name
+     */
+    static List<TypeGroup> group(List<InstanceKey> keys, Map<String, TypeGroup> old) {
+        Map<String, List<InstanceKey>> byType = new LinkedHashMap<String, List<InstanceKey>>();
+        for (InstanceKey key : keys) {
+            Object o = key.get();
+            if (o == null) {
+                continue;
+            }
+            String name = o.getClass().getName();
+            List<InstanceKey> list = byType.get(name);
+            if (list == null) {
+                list = new ArrayList<InstanceKey>();
+                byType.put(name, list);
+            }
+            list.add(key);
+        }
+        List<String> names = new ArrayList<String>(byType.keySet());
+        Collections.sort(names);
+        List<TypeGroup> groups = new ArrayList<TypeGroup>(names.size());
+        for (String name : names) {
+            TypeGroup group = old.get(name);
+            if (group == null) {
+                group = new TypeGroup(name);
+            }
+            group.setMembers(byType.get(name));
+            groups.add(group);
+        }
+        return groups;
+    }
+}
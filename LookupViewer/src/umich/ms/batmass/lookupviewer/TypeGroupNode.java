@@ -0,0 +1,174 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.awt.event.ActionEvent;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import org.openide.nodes.AbstractNode;
+import org.openide.nodes.Children;
+import org.openide.nodes.Node;
+import org.openide.util.NbBundle;
+
+/**
+ * Displays the objects of one class with their count. The children are only
+ * created when the node is expanded, a page at a time: the last child loads
+ * the next page.
+ */
+@NbBundle.Messages({
+    "# {0} - class name",
+    "# {1} - number of objects",
+    "LBL_TypeGroup={0} ({1})",
+    "# {0} - number of objects in the next page",
+    "# {1} - number of objects not shown yet",
+    "LBL_LoadMore=Load {0} more ({1} not shown)"
+})
+class TypeGroupNode extends AbstractNode {
+
+    /** The number of children created at a time. */
+    static final int PAGE_SIZE = 500;
+
+    private final TypeGroup group;
+
+    TypeGroupNode(TypeGroup group, ExpansionContext expansion) {
+        super(new PagedChildren(group, expansion));
+        this.group = group;
+        setName(group.getTypeName());
+        updateDisplayName();
+        // groups outlive their nodes (the filter removes and adds them again),
+        // so the group must not hold this node
+        group.addChangeListener(new GroupListener(this, group));
+    }
+
+    private void updateDisplayName() {
+        setDisplayName(Bundle.LBL_TypeGroup(group.getTypeName(), group.getMembers().size()));
+    }
+
+    /**
+     * Updates the display name of a node while the node exists, and removes
+     * itself from the group once the node was collected.
+     */
+    private static final class GroupListener implements ChangeListener {
+
+        private final WeakReference<TypeGroupNode> node;
+        private final TypeGroup group;
+
+        GroupListener(TypeGroupNode node, TypeGroup group) {
+            this.node = new WeakReference<TypeGroupNode>(node);
+            this.group = group;
+        }
+
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            TypeGroupNode n = node.get();
+            if (n == null) {
+                group.removeChangeListener(this);
+            } else {
+                n.updateDisplayName();
+            }
+        }
+    }
+
+    /**
+     * The first pages of the objects in a group, followed by a node that loads
+     * the next page.
+     */
+    private static class PagedChildren extends Children.Keys<Object> implements ChangeListener {
+
+        private final TypeGroup group;
+        private final ExpansionContext expansion;
+        private volatile int shown = PAGE_SIZE;
+
+        PagedChildren(TypeGroup group, ExpansionContext expansion) {
+            this.group = group;
+            this.expansion = expansion;
+        }
+
+        @Override
+        protected void addNotify() {
+            group.addChangeListener(this);
+            updateKeys();
+        }
+
+        @Override
+        protected void removeNotify() {
+            group.removeChangeListener(this);
+            setKeys(Collections.emptySet());
+        }
+
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            updateKeys();
+        }
+
+        void loadMore() {
+            shown += PAGE_SIZE;
+            updateKeys();
+        }
+
+        private void updateKeys() {
+            List<InstanceKey> members = group.getMembers();
+            int n = Math.min(shown, members.size());
+            List<Object> keys = new ArrayList<Object>(n + 1);
+            keys.addAll(members.subList(0, n));
+            if (n < members.size()) {
+                keys.add(new LoadMore(members.size() - n));
+            }
+            setKeys(keys);
+        }
+
+        @Override
+        protected Node[] createNodes(Object key) {
+            if (key instanceof LoadMore) {
+                return new Node[]{new LoadMoreNode(this, ((LoadMore) key).remaining)};
+            }
+            Node node = SubViewerChildFactory.createNode((InstanceKey) key, expansion);
+            return node == null ? null : new Node[]{node};
+        }
+    }
+
+    /** The key of the node that loads the next page. */
+    private static final class LoadMore {
+
+        final int remaining;
+
+        LoadMore(int remaining) {
+            this.remaining = remaining;
+        }
+    }
+
+    private static class LoadMoreNode extends AbstractNode {
+
+        private final Action loadMoreAction;
+
+        LoadMoreNode(final PagedChildren children, int remaining) {
+            super(Children.LEAF);
+            String name = Bundle.LBL_LoadMore(Math.min(PAGE_SIZE, remaining), remaining);
+            setDisplayName(name);
+            loadMoreAction = new AbstractAction(name) {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    children.loadMore();
+                }
+            };
+        }
+
+        @Override
+        public Action getPreferredAction() {
+            return loadMoreAction;
+        }
+
+        @Override
+        public Action[] getActions(boolean context) {
+            return new Action[]{loadMoreAction};
+        }
+    }
+}
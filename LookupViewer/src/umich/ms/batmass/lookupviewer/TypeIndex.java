@@ -0,0 +1,223 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package umich.ms.batmass.lookupviewer;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * An index of the classes of the objects in a lookup by the names of all
+ * their supertypes, for filtering the viewer as the user types.
+ * <p>
+ * Every simple and fully qualified name of a class, its superclasses and its
+ * interfaces is stored in a prefix trie, in lower case, pointing to the
+ * class. Every node keeps the ids of the classes with a name below it, so a
+ * query is a walk down the trie to the prefix followed by a pass over the
+ * ids of that node, independent of the number of objects and of the size of
+ * the subtree. The index is updated once per refresh and only classes that
+ * weren't seen before are added. Classes that are gone stay in the trie until
+ * they make up half of it, when it is rebuilt.
+ * <p>
+ * Classes are only referenced weakly, so the index doesn't keep the classes
+ * of objects that left the lookup, or their class loaders, from being
+ * unloaded.
+ * <p>
+ * Not thread safe; the factory only uses it on its update thread.
+ */
+final class TypeIndex {
+
+    private static final ClassValue<String[]> NAMES = new ClassValue<String[]>() {
+        @Override
+        protected String[] computeValue(Class<?> type) {
+            Set<String> names = new LinkedHashSet<String>();
+            Deque<Class<?>> queue = new ArrayDeque<Class<?>>();
+            Set<Class<?>> seen = new LinkedHashSet<Class<?>>();
+            queue.add(type);
+            while (!queue.isEmpty()) {
+                Class<?> t = queue.poll();
+                if (!seen.add(t)) {
+                    continue;
+                }
+                names.add(t.getName().toLowerCase(Locale.ENGLISH));
+                String simple = t.getSimpleName();
+                if (!simple.isEmpty()) {
+                    names.add(simple.toLowerCase(Locale.ENGLISH));
+                }
+                if (t.getSuperclass() != null) {
+                    queue.add(t.getSuperclass());
+                }
+                queue.addAll(Arrays.asList(t.getInterfaces()));
+            }
+            return names.toArray(new String[names.size()]);
+        }
+    };
+
+    private static final Comparator<Class<?>> BY_NAME = new Comparator<Class<?>>() {
+        @Override
+        public int compare(Class<?> a, Class<?> b) {
+            return a.getName().compareTo(b.getName());
+        }
+    };
+
+    private TrieNode root = new TrieNode();
+    /** The indexed classes; the index of a class is its id in the trie. */
+    private final List<WeakReference<Class<?>>> classes = new ArrayList<WeakReference<Class<?>>>();
+    private final Map<Class<?>, Integer> ids = new WeakHashMap<Class<?>, Integer>();
+    /** The keys of the last update, by class. */
+    private Map<Class<?>, List<InstanceKey>> members = Collections.emptyMap();
+
+    /**
+     * Indexes the classes of new keys.
+     */
+    void update(List<InstanceKey> keys) {
+        Map<Class<?>, List<InstanceKey>> byClass = new LinkedHashMap<Class<?>, List<InstanceKey>>();
+        for (InstanceKey key : keys) {
+            Object o = key.get();
+            if (o == null) {
+                continue;
+            }
+            List<InstanceKey> list = byClass.get(o.getClass());
+            if (list == null) {
+                list = new ArrayList<InstanceKey>();
+                byClass.put(o.getClass(), list);
+            }
+            list.add(key);
+        }
+        members = byClass;
+        if (classes.size() > 2 * byClass.size() + 16) {
+            // mostly classes that are gone
+            root = new TrieNode();
+            classes.clear();
+            ids.clear();
+        }
+        for (Class<?> type : byClass.keySet()) {
+            if (ids.containsKey(type)) {
+                continue;
+            }
+            int id = classes.size();
+            classes.add(new WeakReference<Class<?>>(type));
+            ids.put(type, id);
+            for (String name : NAMES.get(type)) {
+                root.insert(name, id);
+            }
+        }
+    }
+
+    /**
+     * @return the classes of the last update that have a supertype whose
+     * simple or fully qualified name starts with the prefix, ignoring case,
+     * sorted by name
+     */
+    List<Class<?>> find(String prefix) {
+        TrieNode node = root.find(prefix.toLowerCase(Locale.ENGLISH));
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<Class<?>> result = new ArrayList<Class<?>>();
+        for (int i = 0; i < node.idCount; i++) {
+            Class<?> type = classes.get(node.ids[i]).get();
+            if (type != null && members.containsKey(type)) {
+                result.add(type);
+            }
+        }
+        Collections.sort(result, BY_NAME);
+        return result;
+    }
+
+    /**
+     * @return the keys of a class in the last update
+     */
+    List<InstanceKey> getMembers(Class<?> type) {
+        List<InstanceKey> list = members.get(type);
+        return list == null ? Collections.<InstanceKey>emptyList() : list;
+    }
+
+    private static final class TrieNode {
+
+        private static final char[] NO_CHARS = new char[0];
+        private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+        private static final int[] NO_IDS = new int[0];
+
+        char[] chars = NO_CHARS;
+        TrieNode[] children = NO_CHILDREN;
+        int size;
+        /**
+         * The ids of the classes with a name ending here or below, ascending
+         * and without duplicates.
+         */
+        int[] ids = NO_IDS;
+        int idCount;
+
+        TrieNode child(char c) {
+            for (int i = 0; i < size; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        TrieNode find(String s) {
+            TrieNode n = this;
+            for (int i = 0; i < s.length() && n != null; i++) {
+                n = n.child(s.charAt(i));
+            }
+            return n;
+        }
+
+        /**
+         * Adds a name of a class. Ids must be inserted in ascending order,
+         * all names of a class at once.
+         */
+        void insert(String s, int id) {
+            TrieNode n = this;
+            n.addId(id);
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                TrieNode next = n.child(c);
+                if (next == null) {
+                    next = n.addChild(c);
+                }
+                n = next;
+                n.addId(id);
+            }
+        }
+
+        private void addId(int id) {
+            // ids arrive in ascending order, so a repeat is the last id
+            if (idCount > 0 && ids[idCount - 1] == id) {
+                return;
+            }
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(2, idCount * 2));
+            }
+            ids[idCount++] = id;
+        }
+
+        private TrieNode addChild(char c) {
+            if (size == chars.length) {
+                int length = Math.max(2, size * 2);
+                chars = Arrays.copyOf(chars, length);
+                children = Arrays.copyOf(children, length);
+            }
+            TrieNode child = new TrieNode();
+            chars[size] = c;
+            children[size++] = child;
+            return child;
+        }
+    }
+}